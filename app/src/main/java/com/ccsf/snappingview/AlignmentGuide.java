@@ -0,0 +1,198 @@
+package com.ccsf.snappingview;
+
+import android.graphics.Canvas;
+import android.graphics.ColorFilter;
+import android.graphics.Paint;
+import android.graphics.PixelFormat;
+import android.graphics.RectF;
+import android.graphics.drawable.Drawable;
+
+import java.util.Arrays;
+
+/**
+ * 拖动时的对齐辅助线：父布局和其他元素的左、中、右和上、中、下分别排序保存在两个数组中，
+ * 每次移动只对拖动元素的三条边做二分查找，不需要遍历所有元素
+ * <p>
+ * 候选边在拖动开始时收集一次并排序，拖动过程中其他元素不动，数组不需要更新
+ */
+public class AlignmentGuide {
+
+    /**
+     * 默认吸附距离，单位是dip
+     */
+    public static final int DEFAULT_THRESHOLD = 6;
+    public static final int DEFAULT_GUIDE_COLOR = 0xff00a0e9;
+
+    private float[] mXs = new float[48];
+    private float[] mYs = new float[48];
+    private int mXCount, mYCount;
+
+    /**
+     * 最近一次snap的结果，没有吸附的方向为NaN和0
+     */
+    private float mGuideX = Float.NaN;
+    private float mGuideY = Float.NaN;
+    private float mSnapDx, mSnapDy;
+
+    public void clear() {
+        mXCount = 0;
+        mYCount = 0;
+        mGuideX = Float.NaN;
+        mGuideY = Float.NaN;
+        mSnapDx = 0;
+        mSnapDy = 0;
+    }
+
+    /**
+     * 加入一个矩形的左、中、右和上、中、下作为候选
+     */
+    public void addBounds(float left, float top, float right, float bottom) {
+        addX(left);
+        addX((left + right) / 2);
+        addX(right);
+        addY(top);
+        addY((top + bottom) / 2);
+        addY(bottom);
+    }
+
+    public void addX(float x) {
+        if (mXCount == mXs.length) {
+            mXs = Arrays.copyOf(mXs, mXCount * 2);
+        }
+        mXs[mXCount++] = x;
+    }
+
+    public void addY(float y) {
+        if (mYCount == mYs.length) {
+            mYs = Arrays.copyOf(mYs, mYCount * 2);
+        }
+        mYs[mYCount++] = y;
+    }
+
+    /**
+     * 候选收集完后调用一次
+     */
+    public void build() {
+        Arrays.sort(mXs, 0, mXCount);
+        Arrays.sort(mYs, 0, mYCount);
+    }
+
+    /**
+     * 分别在水平和竖直方向找距离bounds三条边最近的候选
+     *
+     * @param bounds    拖动元素当前的外接矩形
+     * @param threshold 吸附距离
+     * @return 是否有方向被吸附，偏移通过getSnapDx、getSnapDy获取
+     */
+    public boolean snap(RectF bounds, float threshold) {
+        mGuideX = Float.NaN;
+        mGuideY = Float.NaN;
+        mSnapDx = 0;
+        mSnapDy = 0;
+        float bestX = threshold;
+        float bestY = threshold;
+        for (int i = 0; i < 3; i++) {
+            float x = i == 0 ? bounds.left : (i == 1 ? bounds.centerX() : bounds.right);
+            float candidate = nearest(mXs, mXCount, x);
+            if (!Float.isNaN(candidate) && Math.abs(candidate - x) <= bestX) {
+                bestX = Math.abs(candidate - x);
+                mSnapDx = candidate - x;
+                mGuideX = candidate;
+            }
+            float y = i == 0 ? bounds.top : (i == 1 ? bounds.centerY() : bounds.bottom);
+            candidate = nearest(mYs, mYCount, y);
+            if (!Float.isNaN(candidate) && Math.abs(candidate - y) <= bestY) {
+                bestY = Math.abs(candidate - y);
+                mSnapDy = candidate - y;
+                mGuideY = candidate;
+            }
+        }
+        return !Float.isNaN(mGuideX) || !Float.isNaN(mGuideY);
+    }
+
+    private static float nearest(float[] sorted, int count, float value) {
+        if (count == 0) {
+            return Float.NaN;
+        }
+        int index = Arrays.binarySearch(sorted, 0, count, value);
+        if (index >= 0) {
+            return sorted[index];
+        }
+        index = -index - 1;
+        if (index == 0) {
+            return sorted[0];
+        }
+        if (index == count) {
+            return sorted[count - 1];
+        }
+        return value - sorted[index - 1] <= sorted[index] - value ? sorted[index - 1] : sorted[index];
+    }
+
+    public float getSnapDx() {
+        return mSnapDx;
+    }
+
+    public float getSnapDy() {
+        return mSnapDy;
+    }
+
+    /**
+     * 竖直辅助线的x坐标，没有时为NaN
+     */
+    public float getGuideX() {
+        return mGuideX;
+    }
+
+    /**
+     * 水平辅助线的y坐标，没有时为NaN
+     */
+    public float getGuideY() {
+        return mGuideY;
+    }
+
+    /**
+     * 画出当前的辅助线，贯穿整个区域
+     */
+    public void draw(Canvas canvas, float width, float height, Paint paint) {
+        if (!Float.isNaN(mGuideX)) {
+            canvas.drawLine(mGuideX, 0, mGuideX, height, paint);
+        }
+        if (!Float.isNaN(mGuideY)) {
+            canvas.drawLine(0, mGuideY, width, mGuideY, paint);
+        }
+    }
+
+    /**
+     * 加到父布局的Overlay上画辅助线，贴纸View自身的范围画不下贯穿父布局的线
+     */
+    public static class GuideDrawable extends Drawable {
+
+        private final AlignmentGuide mGuide;
+        private final Paint mPaint;
+
+        public GuideDrawable(AlignmentGuide guide, Paint paint) {
+            mGuide = guide;
+            mPaint = paint;
+        }
+
+        @Override
+        public void draw(Canvas canvas) {
+            mGuide.draw(canvas, getBounds().width(), getBounds().height(), mPaint);
+        }
+
+        @Override
+        public void setAlpha(int alpha) {
+            mPaint.setAlpha(alpha);
+        }
+
+        @Override
+        public void setColorFilter(ColorFilter colorFilter) {
+            mPaint.setColorFilter(colorFilter);
+        }
+
+        @Override
+        public int getOpacity() {
+            return PixelFormat.TRANSLUCENT;
+        }
+    }
+}
@@ -0,0 +1,59 @@
+package com.ccsf.snappingview;
+
+import android.graphics.Bitmap;
+import android.graphics.Canvas;
+import android.graphics.ColorFilter;
+import android.graphics.Paint;
+
+/**
+ * 图片贴纸元素
+ */
+public class BitmapStickerElement extends StickerElement {
+
+    private Bitmap mBitmap;
+    private Paint mBitmapPaint = new Paint(Paint.FILTER_BITMAP_FLAG);
+
+    public BitmapStickerElement(Bitmap bitmap) {
+        this.mBitmap = bitmap;
+        updateContentSize();
+    }
+
+    public Bitmap getBitmap() {
+        return mBitmap;
+    }
+
+    public void setBitmap(Bitmap bitmap) {
+        this.mBitmap = bitmap;
+        updateContentSize();
+    }
+
+    /**
+     * ALPHA_8遮罩绘制时使用的颜色，对ARGB_8888的图片只影响透明度
+     */
+    public void setTintColor(int color) {
+        mBitmapPaint.setColor(color);
+    }
+
+    public void setColorFilter(ColorFilter filter) {
+        mBitmapPaint.setColorFilter(filter);
+    }
+
+    public Paint getPaint() {
+        return mBitmapPaint;
+    }
+
+    @Override
+    public int getContentWidth() {
+        return mBitmap.getWidth();
+    }
+
+    @Override
+    public int getContentHeight() {
+        return mBitmap.getHeight();
+    }
+
+    @Override
+    protected void drawContent(Canvas canvas) {
+        canvas.drawBitmap(mBitmap, 0, 0, mBitmapPaint);
+    }
+}
@@ -0,0 +1,133 @@
+package com.ccsf.snappingview;
+
+import android.graphics.Rect;
+import android.view.View;
+
+/**
+ * 记录上一次和这一次的绘制范围，只刷新两者的并集
+ * <p>
+ * 每次变换后先reset，再把旋转后的四个角、控制图标和编辑按钮的范围union进来，最后调用invalidate
+ */
+public class DirtyRegion {
+
+    /**
+     * 边框线宽和抗锯齿需要额外刷新的像素
+     */
+    public static final int DEFAULT_OUTSET = 4;
+
+    private final Rect mLast = new Rect();
+    private final Rect mCurrent = new Rect();
+    private final Rect mDirty = new Rect();
+    private boolean hasLast = false;
+    private int mOutset = DEFAULT_OUTSET;
+    private IDebugListener mDebugListener;
+
+    public void setOutset(int outset) {
+        this.mOutset = outset;
+    }
+
+    public void setDebugListener(IDebugListener listener) {
+        this.mDebugListener = listener;
+    }
+
+    /**
+     * 开始记录这一次的绘制范围
+     */
+    public void reset() {
+        mCurrent.setEmpty();
+    }
+
+    public void union(int left, int top, int right, int bottom) {
+        if (mCurrent.isEmpty()) {
+            mCurrent.set(left, top, right, bottom);
+        } else {
+            mCurrent.union(left, top, right, bottom);
+        }
+    }
+
+    /**
+     * 以(x, y)为中心、宽高为width和height的矩形
+     */
+    public void unionCenter(int x, int y, int width, int height) {
+        union(x - width / 2, y - height / 2, x + width / 2, y + height / 2);
+    }
+
+    /**
+     * 四个角的坐标[x0, y0, x1, y1, ...]
+     */
+    public void unionQuad(float[] corners) {
+        int left = (int) Math.floor(Math.min(Math.min(corners[0], corners[2]), Math.min(corners[4], corners[6])));
+        int top = (int) Math.floor(Math.min(Math.min(corners[1], corners[3]), Math.min(corners[5], corners[7])));
+        int right = (int) Math.ceil(Math.max(Math.max(corners[0], corners[2]), Math.max(corners[4], corners[6])));
+        int bottom = (int) Math.ceil(Math.max(Math.max(corners[1], corners[3]), Math.max(corners[5], corners[7])));
+        union(left, top, right, bottom);
+    }
+
+    /**
+     * 这一次的范围已经通过其他方式刷新，只记录下来作为下一次的上一次范围
+     */
+    public void markDrawn() {
+        mLast.set(mCurrent);
+        hasLast = true;
+    }
+
+    /**
+     * 丢弃上一次的范围，下一次invalidate时整体刷新
+     */
+    public void discard() {
+        hasLast = false;
+    }
+
+    /**
+     * 刷新上一次和这一次范围的并集，没有上一次的范围时整体刷新
+     *
+     * @param view
+     */
+    public void invalidate(View view) {
+        int viewWidth = view.getWidth();
+        int viewHeight = view.getHeight();
+        if (!hasLast) {
+            view.invalidate();
+            markDrawn();
+            report(view, 0, 0, viewWidth, viewHeight);
+            return;
+        }
+        mDirty.set(mLast);
+        if (!mCurrent.isEmpty()) {
+            if (mDirty.isEmpty()) {
+                mDirty.set(mCurrent);
+            } else {
+                mDirty.union(mCurrent);
+            }
+        }
+        mDirty.inset(-mOutset, -mOutset);
+        if (!mDirty.intersect(0, 0, viewWidth, viewHeight)) {
+            markDrawn();
+            report(view, 0, 0, 0, 0);
+            return;
+        }
+        view.invalidate(mDirty.left, mDirty.top, mDirty.right, mDirty.bottom);
+        markDrawn();
+        report(view, mDirty.left, mDirty.top, mDirty.right, mDirty.bottom);
+    }
+
+    private void report(View view, int left, int top, int right, int bottom) {
+        if (mDebugListener != null) {
+            mDirty.set(left, top, right, bottom);
+            int savedArea = view.getWidth() * view.getHeight() - mDirty.width() * mDirty.height();
+            mDebugListener.onInvalidate(view, mDirty, savedArea);
+        }
+    }
+
+    /**
+     * 调试用，报告每次实际刷新的范围
+     */
+    public interface IDebugListener {
+        /**
+         * @param view      刷新的View
+         * @param dirty     实际刷新的范围，回调结束后会被复用
+         * @param savedArea 相比整体刷新少绘制的像素数
+         */
+        void onInvalidate(View view, Rect dirty, int savedArea);
+    }
+}
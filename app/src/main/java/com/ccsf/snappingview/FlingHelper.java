@@ -0,0 +1,154 @@
+package com.ccsf.snappingview;
+
+import android.view.MotionEvent;
+import android.view.VelocityTracker;
+import android.view.View;
+import android.view.ViewConfiguration;
+import android.widget.OverScroller;
+
+/**
+ * 松手后的惯性滑动：VelocityTracker记录手指速度，OverScroller计算减速过程，每帧回调一次位移
+ * <p>
+ * VelocityTracker在整个手势中复用，View离开窗口时回收
+ */
+public class FlingHelper implements Runnable {
+
+    private final View mView;
+    private final OverScroller mScroller;
+    private final Callback mCallback;
+    private final int mMinVelocity;
+    private final int mMaxVelocity;
+    private VelocityTracker mVelocityTracker;
+    private boolean isEnabled = true;
+    private boolean isFlinging = false;
+    private int mLastX, mLastY;
+
+    public FlingHelper(View view, Callback callback) {
+        if (view == null || callback == null) {
+            throw new NullPointerException("view和callback不能为空");
+        }
+        mView = view;
+        mCallback = callback;
+        mScroller = new OverScroller(view.getContext());
+        ViewConfiguration configuration = ViewConfiguration.get(view.getContext());
+        mMinVelocity = configuration.getScaledMinimumFlingVelocity();
+        mMaxVelocity = configuration.getScaledMaximumFlingVelocity();
+    }
+
+    public void setEnabled(boolean enabled) {
+        if (!enabled) {
+            stop();
+        }
+        this.isEnabled = enabled;
+    }
+
+    public boolean isFlinging() {
+        return isFlinging;
+    }
+
+    /**
+     * 记录一个事件，拖动中View自己也在移动，需要先换算到不动的坐标系再计算速度
+     *
+     * @param event   触摸事件
+     * @param offsetX 把event中的坐标换算到父布局坐标系的偏移
+     * @param offsetY 把event中的坐标换算到父布局坐标系的偏移
+     */
+    public void addMovement(MotionEvent event, float offsetX, float offsetY) {
+        if (mVelocityTracker == null) {
+            mVelocityTracker = VelocityTracker.obtain();
+        }
+        //临时平移事件坐标，记录完恢复，不需要复制事件
+        event.offsetLocation(offsetX, offsetY);
+        mVelocityTracker.addMovement(event);
+        event.offsetLocation(-offsetX, -offsetY);
+    }
+
+    /**
+     * 丢弃已经记录的速度，例如双指手势结束时
+     */
+    public void clearMovement() {
+        if (mVelocityTracker != null) {
+            mVelocityTracker.clear();
+        }
+    }
+
+    /**
+     * 按抬起的手指的速度开始惯性滑动，速度太小时不滑动
+     *
+     * @param pointerId 抬起的手指
+     * @param startX    起始位置
+     * @param startY    起始位置
+     * @return 是否开始滑动
+     */
+    public boolean fling(int pointerId, int startX, int startY, int minX, int maxX, int minY, int maxY) {
+        if (!isEnabled || mVelocityTracker == null) {
+            return false;
+        }
+        mVelocityTracker.computeCurrentVelocity(1000, mMaxVelocity);
+        float velocityX = mVelocityTracker.getXVelocity(pointerId);
+        float velocityY = mVelocityTracker.getYVelocity(pointerId);
+        mVelocityTracker.clear();
+        if (Math.hypot(velocityX, velocityY) < mMinVelocity) {
+            return false;
+        }
+        stop();
+        mLastX = startX;
+        mLastY = startY;
+        mScroller.fling(startX, startY, (int) velocityX, (int) velocityY, minX, maxX, minY, maxY);
+        isFlinging = true;
+        mView.postOnAnimation(this);
+        return true;
+    }
+
+    @Override
+    public void run() {
+        if (!isFlinging) {
+            return;
+        }
+        if (mScroller.computeScrollOffset()) {
+            int x = mScroller.getCurrX();
+            int y = mScroller.getCurrY();
+            if (x != mLastX || y != mLastY) {
+                mCallback.onFlingMove(x - mLastX, y - mLastY);
+                mLastX = x;
+                mLastY = y;
+            }
+            mView.postOnAnimation(this);
+        } else {
+            isFlinging = false;
+            mCallback.onFlingEnd();
+        }
+    }
+
+    /**
+     * 停止滑动，正在滑动时会回调onFlingEnd
+     */
+    public void stop() {
+        if (isFlinging) {
+            isFlinging = false;
+            mScroller.forceFinished(true);
+            mView.removeCallbacks(this);
+            mCallback.onFlingEnd();
+        }
+    }
+
+    /**
+     * View离开窗口时调用
+     */
+    public void recycle() {
+        stop();
+        if (mVelocityTracker != null) {
+            mVelocityTracker.recycle();
+            mVelocityTracker = null;
+        }
+    }
+
+    public interface Callback {
+        void onFlingMove(int dx, int dy);
+
+        /**
+         * 滑动自然结束或者被stop打断
+         */
+        void onFlingEnd();
+    }
+}
@@ -0,0 +1,126 @@
+package com.ccsf.snappingview;
+
+import android.content.res.Resources;
+import android.graphics.Bitmap;
+import android.graphics.BitmapFactory;
+import android.graphics.drawable.Drawable;
+import android.util.LongSparseArray;
+
+/**
+ * 进程内共享的图标缓存，按资源id和屏幕密度做key并做引用计数
+ * <p>
+ * 所有贴纸共用同一份解码后的Bitmap或者Drawable.ConstantState，最后一个使用者释放后才移除
+ */
+public class IconPool {
+
+    private static final LongSparseArray<BitmapEntry> sBitmaps = new LongSparseArray<>();
+    private static final LongSparseArray<DrawableEntry> sDrawables = new LongSparseArray<>();
+
+    private static class BitmapEntry {
+        Bitmap bitmap;
+        int refCount;
+    }
+
+    private static class DrawableEntry {
+        Drawable.ConstantState state;
+        int refCount;
+    }
+
+    private IconPool() {
+    }
+
+    private static long key(Resources res, int resId) {
+        return ((long) res.getDisplayMetrics().densityDpi << 32) | (resId & 0xffffffffL);
+    }
+
+    /**
+     * 获取共享的Bitmap，引用计数加一
+     *
+     * @param res
+     * @param resId
+     * @return
+     */
+    public static synchronized Bitmap acquireBitmap(Resources res, int resId) {
+        long key = key(res, resId);
+        BitmapEntry entry = sBitmaps.get(key);
+        if (entry == null) {
+            entry = new BitmapEntry();
+            entry.bitmap = BitmapFactory.decodeResource(res, resId);
+            sBitmaps.put(key, entry);
+        }
+        entry.refCount++;
+        return entry.bitmap;
+    }
+
+    /**
+     * 释放共享的Bitmap，引用计数为0时从缓存中移除
+     * <p>
+     * 这里不调用recycle，仍在引用的地方可以继续安全使用
+     *
+     * @param res
+     * @param resId
+     */
+    public static synchronized void releaseBitmap(Resources res, int resId) {
+        long key = key(res, resId);
+        BitmapEntry entry = sBitmaps.get(key);
+        if (entry != null && --entry.refCount <= 0) {
+            sBitmaps.remove(key);
+        }
+    }
+
+    /**
+     * 获取一个新的Drawable实例，共用同一份ConstantState，引用计数加一
+     *
+     * @param res
+     * @param resId
+     * @return
+     */
+    public static synchronized Drawable acquireDrawable(Resources res, int resId) {
+        long key = key(res, resId);
+        DrawableEntry entry = sDrawables.get(key);
+        if (entry == null) {
+            Drawable drawable = res.getDrawable(resId);
+            Drawable.ConstantState state = drawable.getConstantState();
+            if (state == null) {
+                //没有ConstantState的Drawable无法共享
+                return drawable;
+            }
+            entry = new DrawableEntry();
+            entry.state = state;
+            sDrawables.put(key, entry);
+        }
+        entry.refCount++;
+        return entry.state.newDrawable(res);
+    }
+
+    /**
+     * 获取Drawable用来查询尺寸，不增加引用计数，不能作为长期持有的图标使用
+     * <p>
+     * 还没有attach的View用它计算布局，attach之后再通过acquireDrawable获取
+     *
+     * @param res
+     * @param resId
+     * @return
+     */
+    public static synchronized Drawable peekDrawable(Resources res, int resId) {
+        DrawableEntry entry = sDrawables.get(key(res, resId));
+        if (entry != null) {
+            return entry.state.newDrawable(res);
+        }
+        return res.getDrawable(resId);
+    }
+
+    /**
+     * 释放共享的Drawable，引用计数为0时从缓存中移除
+     *
+     * @param res
+     * @param resId
+     */
+    public static synchronized void releaseDrawable(Resources res, int resId) {
+        long key = key(res, resId);
+        DrawableEntry entry = sDrawables.get(key);
+        if (entry != null && --entry.refCount <= 0) {
+            sDrawables.remove(key);
+        }
+    }
+}
@@ -23,6 +23,8 @@ class MainActivity : AppCompatActivity() {
         val bitmap = Text2BitmapUtils.getBitmap(this, "测试测试撒打算打算打算打算打算", Color.BLACK, Gravity.CENTER, 100)
 
         val sview = SignatureView(this, bitmap, 3)
+        //有固定的id才会保存和恢复状态
+        sview.id = R.id.signature_view
         rl_main.addView(sview)
         val sparamLayout = sview.layoutParams as RelativeLayout.LayoutParams
         sparamLayout.addRule(RelativeLayout.CENTER_IN_PARENT)
@@ -0,0 +1,213 @@
+package com.ccsf.snappingview;
+
+import android.content.ComponentCallbacks2;
+import android.content.res.Configuration;
+import android.graphics.Bitmap;
+import android.os.Handler;
+import android.os.Looper;
+
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+/**
+ * 图片内容的mipmap链，第0级是原图，之后每一级宽高减半
+ * <p>
+ * 缩小显示时绘制和屏幕上大小最接近的一级，不再每一帧都对原图采样。缺少的级别在后台线程从上一级生成，
+ * 生成完成前先返回已有的最接近的更大一级，主线程不做缩放；也可以传入已经生成好的各级。
+ * 内存紧张时只保留最近绘制的一级，原图始终保留，导出时使用原图
+ */
+public class MipmapChain implements ComponentCallbacks2 {
+
+    private static final ExecutorService sExecutor = Executors.newSingleThreadExecutor();
+    private static final Handler sMainHandler = new Handler(Looper.getMainLooper());
+
+    private final Bitmap mSource;
+    private final Bitmap[] mLevels;
+    private int mLastLevel = 0;
+    private Listener mListener;
+    private boolean isBuilding = false;
+    /**
+     * 每次trim加一，trim之前开始的生成结果不再放回链中
+     */
+    private int mGeneration = 0;
+
+    public MipmapChain(Bitmap source) {
+        this(source, (Bitmap[]) null);
+    }
+
+    /**
+     * @param source 原图
+     * @param levels 已经生成好的第1级、第2级……，可以不传，不足的级别用到时在后台生成
+     */
+    public MipmapChain(Bitmap source, Bitmap... levels) {
+        if (source == null) {
+            throw new NullPointerException("source不能为空");
+        }
+        mSource = source;
+        mLevels = new Bitmap[levelCount(source.getWidth(), source.getHeight())];
+        mLevels[0] = source;
+        if (levels != null) {
+            for (int i = 0; i < levels.length && i + 1 < mLevels.length; i++) {
+                mLevels[i + 1] = levels[i];
+            }
+        }
+    }
+
+    /**
+     * 宽高都不小于1像素的级数
+     */
+    private static int levelCount(int width, int height) {
+        int count = 1;
+        while (width > 1 && height > 1) {
+            width /= 2;
+            height /= 2;
+            count++;
+        }
+        return count;
+    }
+
+    /**
+     * 后台生成的级别放回链中之后在主线程回调
+     */
+    public void setListener(Listener listener) {
+        mListener = listener;
+    }
+
+    public Bitmap getSource() {
+        return mSource;
+    }
+
+    public int getLevelCount() {
+        return mLevels.length;
+    }
+
+    /**
+     * 选择不小于屏幕上大小的最小一级，保证绘制时只缩小不放大
+     *
+     * @param scale 原图到屏幕的缩放比例
+     * @return 级别
+     */
+    public int selectLevel(float scale) {
+        if (scale >= 1f || scale <= 0f) {
+            return 0;
+        }
+        int level = (int) Math.floor(-Math.log(scale) / Math.log(2));
+        return Math.min(level, mLevels.length - 1);
+    }
+
+    /**
+     * 获取某一级，还没有生成时在后台生成，先返回已有的最接近的更大一级，最差是原图
+     *
+     * @param level 级别
+     * @return 这一级或者更大一级的Bitmap，宽高需要按返回的Bitmap计算
+     */
+    public Bitmap getLevel(int level) {
+        if (level < 0 || level >= mLevels.length) {
+            throw new IllegalArgumentException("level超出范围: " + level);
+        }
+        if (mLevels[level] == null) {
+            prepare(level);
+            while (mLevels[level] == null) {
+                level--;
+            }
+        }
+        mLastLevel = level;
+        return mLevels[level];
+    }
+
+    /**
+     * 在后台线程生成到maxLevel为止缺少的级别，正在生成时忽略，完成后通过Listener通知再次获取
+     *
+     * @param maxLevel 需要的最小一级
+     */
+    public void prepare(int maxLevel) {
+        maxLevel = Math.min(maxLevel, mLevels.length - 1);
+        if (isBuilding) {
+            return;
+        }
+        int start = 1;
+        while (start <= maxLevel && mLevels[start] != null) {
+            start++;
+        }
+        if (start > maxLevel) {
+            return;
+        }
+        isBuilding = true;
+        final Bitmap parent = mLevels[start - 1];
+        final int from = start;
+        final int count = maxLevel - start + 1;
+        final int generation = mGeneration;
+        sExecutor.execute(new Runnable() {
+            @Override
+            public void run() {
+                final Bitmap[] built = new Bitmap[count];
+                Bitmap current = parent;
+                for (int i = 0; i < count; i++) {
+                    current = Bitmap.createScaledBitmap(current,
+                            Math.max(1, current.getWidth() / 2), Math.max(1, current.getHeight() / 2), true);
+                    built[i] = current;
+                }
+                sMainHandler.post(new Runnable() {
+                    @Override
+                    public void run() {
+                        onLevelsBuilt(generation, from, built);
+                    }
+                });
+            }
+        });
+    }
+
+    private void onLevelsBuilt(int generation, int from, Bitmap[] built) {
+        isBuilding = false;
+        //生成期间被trim时丢弃结果，仍然通知使用方按需要重新生成
+        if (generation == mGeneration) {
+            for (int i = 0; i < built.length; i++) {
+                if (mLevels[from + i] == null) {
+                    mLevels[from + i] = built[i];
+                }
+            }
+        }
+        if (mListener != null) {
+            mListener.onLevelsReady();
+        }
+    }
+
+    /**
+     * 释放除原图和keepLevel之外的各级，keepLevel为-1时只保留原图
+     */
+    public void trim(int keepLevel) {
+        mGeneration++;
+        for (int i = 1; i < mLevels.length; i++) {
+            if (i != keepLevel) {
+                //可能仍在上一帧的绘制中使用，只释放引用，不调用recycle
+                mLevels[i] = null;
+            }
+        }
+    }
+
+    /**
+     * 最近绘制的一级仍被View引用，释放了也不会减少内存，其他级别下次用到时再在后台生成
+     */
+    @Override
+    public void onTrimMemory(int level) {
+        if (level >= TRIM_MEMORY_RUNNING_LOW) {
+            trim(mLastLevel);
+        }
+    }
+
+    @Override
+    public void onLowMemory() {
+        trim(mLastLevel);
+    }
+
+    @Override
+    public void onConfigurationChanged(Configuration newConfig) {
+    }
+
+    public interface Listener {
+        /**
+         * 在主线程中回调，可以重新获取需要的级别并重画
+         */
+        void onLevelsReady();
+    }
+}
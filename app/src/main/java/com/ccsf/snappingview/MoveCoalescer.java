@@ -0,0 +1,155 @@
+package com.ccsf.snappingview;
+
+import android.view.Choreographer;
+import android.view.MotionEvent;
+
+/**
+ * 把一帧内的多个MOVE事件合并，在Choreographer的下一帧统一处理一次
+ * <p>
+ * 历史采样点都会参与旋转角度的累加（调用方可以在坐标系不能换算时关闭），快速转动时不会丢失精度；位移和角度变化都小于阈值时这一帧不处理，变化继续累积
+ */
+public class MoveCoalescer implements Choreographer.FrameCallback {
+
+    /**
+     * 小于这个像素的移动不处理
+     */
+    public static final float MIN_MOVE = 0.5f;
+
+    /**
+     * 小于这个角度的旋转不处理
+     */
+    public static final float MIN_DEGREE = 0.5f;
+
+    private final Callback mCallback;
+    private boolean isEnabled = true;
+    private boolean isScheduled = false;
+
+    /**
+     * 上一次交给回调的点、最新的采样点和两者之间累积的旋转角度
+     */
+    private float mAppliedX, mAppliedY;
+    private float mLastX, mLastY;
+    private float mPendingDegree;
+
+    public MoveCoalescer(Callback callback) {
+        if (callback == null) {
+            throw new NullPointerException("callback不能为空");
+        }
+        mCallback = callback;
+    }
+
+    /**
+     * 关闭后每个MOVE事件立即处理，仍然会使用历史采样点累加角度
+     */
+    public void setEnabled(boolean enabled) {
+        if (!enabled) {
+            flush();
+        }
+        this.isEnabled = enabled;
+    }
+
+    /**
+     * 手势开始时调用
+     *
+     * @param x 起始点
+     * @param y 起始点
+     */
+    public void begin(float x, float y) {
+        cancel();
+        mAppliedX = mLastX = x;
+        mAppliedY = mLastY = y;
+        mPendingDegree = 0;
+    }
+
+    /**
+     * 加入一个MOVE事件中拖动手指的采样点
+     * <p>
+     * offset只对当前点准确时（例如View本身被旋转、缩放，历史采样点在变换后的局部坐标系中，
+     * 不能只加一个平移换算）useHistory传false，只使用当前点
+     *
+     * @param event        MOVE事件
+     * @param pointerIndex 拖动的手指在event中的索引
+     * @param offsetX      把event中的坐标换算到回调使用的坐标系的偏移
+     * @param offsetY      把event中的坐标换算到回调使用的坐标系的偏移
+     * @param centerX      旋转中心
+     * @param centerY      旋转中心
+     * @param useHistory   是否使用历史采样点
+     */
+    public void addEvent(MotionEvent event, int pointerIndex, float offsetX, float offsetY, float centerX, float centerY,
+                         boolean useHistory) {
+        int historySize = useHistory ? event.getHistorySize() : 0;
+        for (int i = 0; i < historySize; i++) {
+            addSample(event.getHistoricalX(pointerIndex, i) + offsetX, event.getHistoricalY(pointerIndex, i) + offsetY,
+                    centerX, centerY);
+        }
+        addSample(event.getX(pointerIndex) + offsetX, event.getY(pointerIndex) + offsetY, centerX, centerY);
+        if (!isEnabled) {
+            apply(true);
+        } else if (!isScheduled) {
+            isScheduled = true;
+            Choreographer.getInstance().postFrameCallback(this);
+        }
+    }
+
+    private void addSample(float x, float y, float centerX, float centerY) {
+        mPendingDegree += TransformCore.computeRotateDelta(centerX, centerY, mLastX, mLastY, x, y);
+        mLastX = x;
+        mLastY = y;
+    }
+
+    @Override
+    public void doFrame(long frameTimeNanos) {
+        isScheduled = false;
+        apply(false);
+    }
+
+    /**
+     * 立即处理还没有处理的变化，例如手指抬起时，不受阈值限制
+     */
+    public void flush() {
+        if (isScheduled) {
+            Choreographer.getInstance().removeFrameCallback(this);
+            isScheduled = false;
+        }
+        apply(true);
+    }
+
+    /**
+     * 丢弃还没有处理的变化
+     */
+    public void cancel() {
+        if (isScheduled) {
+            Choreographer.getInstance().removeFrameCallback(this);
+            isScheduled = false;
+        }
+        mAppliedX = mLastX;
+        mAppliedY = mLastY;
+        mPendingDegree = 0;
+    }
+
+    private void apply(boolean force) {
+        boolean isMoved = TransformCore.distance(mAppliedX, mAppliedY, mLastX, mLastY) >= MIN_MOVE;
+        boolean isRotated = Math.abs(mPendingDegree) >= MIN_DEGREE;
+        if (!isMoved && !isRotated && !(force && (mAppliedX != mLastX || mAppliedY != mLastY))) {
+            return;
+        }
+        float degree = mPendingDegree;
+        float preX = mAppliedX;
+        float preY = mAppliedY;
+        mAppliedX = mLastX;
+        mAppliedY = mLastY;
+        mPendingDegree = 0;
+        mCallback.onCoalescedMove(preX, preY, mLastX, mLastY, degree);
+    }
+
+    public interface Callback {
+        /**
+         * @param preX        上一次处理时的点
+         * @param preY        上一次处理时的点
+         * @param curX        最新的点
+         * @param curY        最新的点
+         * @param degreeDelta 两次处理之间所有采样点绕旋转中心累积的角度，顺时针为正
+         */
+        void onCoalescedMove(float preX, float preY, float curX, float curY, float degreeDelta);
+    }
+}
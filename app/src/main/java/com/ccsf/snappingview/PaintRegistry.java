@@ -0,0 +1,131 @@
+package com.ccsf.snappingview;
+
+import android.graphics.Paint;
+import android.graphics.PaintFlagsDrawFilter;
+import android.graphics.Typeface;
+import android.text.TextPaint;
+import android.text.TextUtils;
+import android.util.LruCache;
+
+import java.util.HashMap;
+
+/**
+ * 线程安全的字体和画笔缓存
+ * <p>
+ * 字体按字体族和样式缓存，画笔按字体、字号、颜色和抗锯齿设置缓存。返回的画笔是共享的，只能用于绘制和测量，不要再修改
+ */
+public class PaintRegistry {
+
+    private static final int MAX_PAINT_COUNT = 64;
+
+    /**
+     * 抗锯齿并对位图滤波的绘制过滤器，不可变，所有Canvas共用
+     */
+    public static final PaintFlagsDrawFilter ANTI_ALIAS_DRAW_FILTER =
+            new PaintFlagsDrawFilter(0, Paint.ANTI_ALIAS_FLAG | Paint.FILTER_BITMAP_FLAG);
+
+    private static final HashMap<String, Typeface> sTypefaces = new HashMap<>();
+    private static final LruCache<PaintKey, TextPaint> sPaints = new LruCache<>(MAX_PAINT_COUNT);
+
+    /**
+     * 查找时复用的key，只在持有锁时使用
+     */
+    private static final PaintKey sLookupKey = new PaintKey();
+
+    private PaintRegistry() {
+    }
+
+    /**
+     * 获取字体，同一字体族和样式只创建一次
+     *
+     * @param family 字体族，为空时使用默认字体
+     * @param style  Typeface.NORMAL、Typeface.BOLD等
+     * @return
+     */
+    public static synchronized Typeface getTypeface(String family, int style) {
+        String key = (family == null ? "" : family) + '#' + style;
+        Typeface typeface = sTypefaces.get(key);
+        if (typeface == null) {
+            typeface = TextUtils.isEmpty(family) ? Typeface.defaultFromStyle(style) : Typeface.create(family, style);
+            sTypefaces.put(key, typeface);
+        }
+        return typeface;
+    }
+
+    /**
+     * 获取配置好的共享画笔
+     *
+     * @param family    字体族，为空时使用默认字体
+     * @param style     字体样式
+     * @param textSize  字号
+     * @param color     颜色
+     * @param antiAlias 是否抗锯齿，同时开启位图滤波
+     * @return
+     */
+    public static synchronized TextPaint getTextPaint(String family, int style, float textSize, int color, boolean antiAlias) {
+        sLookupKey.set(family, style, textSize, color, antiAlias);
+        TextPaint paint = sPaints.get(sLookupKey);
+        if (paint == null) {
+            paint = new TextPaint();
+            paint.setTypeface(getTypeface(family, style));
+            paint.setTextSize(textSize);
+            paint.setColor(color);
+            paint.setAntiAlias(antiAlias);
+            paint.setFilterBitmap(antiAlias);
+            PaintKey key = new PaintKey();
+            key.set(family, style, textSize, color, antiAlias);
+            sPaints.put(key, paint);
+        }
+        return paint;
+    }
+
+    /**
+     * 清空缓存，例如内存紧张时
+     */
+    public static synchronized void clear() {
+        sTypefaces.clear();
+        sPaints.evictAll();
+    }
+
+    private static class PaintKey {
+        String family;
+        int style;
+        float textSize;
+        int color;
+        boolean antiAlias;
+
+        void set(String family, int style, float textSize, int color, boolean antiAlias) {
+            this.family = family;
+            this.style = style;
+            this.textSize = textSize;
+            this.color = color;
+            this.antiAlias = antiAlias;
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (this == o) {
+                return true;
+            }
+            if (!(o instanceof PaintKey)) {
+                return false;
+            }
+            PaintKey other = (PaintKey) o;
+            return style == other.style
+                    && textSize == other.textSize
+                    && color == other.color
+                    && antiAlias == other.antiAlias
+                    && TextUtils.equals(family, other.family);
+        }
+
+        @Override
+        public int hashCode() {
+            int result = family == null ? 0 : family.hashCode();
+            result = 31 * result + style;
+            result = 31 * result + Float.floatToIntBits(textSize);
+            result = 31 * result + color;
+            result = 31 * result + (antiAlias ? 1 : 0);
+            return result;
+        }
+    }
+}
@@ -0,0 +1,203 @@
+package com.ccsf.snappingview;
+
+import android.view.MotionEvent;
+
+/**
+ * 双指手势：一次遍历同时算出两指中点的平移、两指距离的缩放比例和两指连线转过的角度
+ * <p>
+ * 只记录两根手指的id和上一次的坐标，处理事件时不创建对象。历史采样点都参与累加；第三根及以后的手指忽略，
+ * 抬起其中一根手指时手势结束，剩下的手指可以继续单指拖动
+ */
+public class PinchRotateDetector {
+
+    /**
+     * 两指距离小于这个像素时只计算平移，避免除0和角度跳变
+     */
+    public static final float MIN_SPAN = 1f;
+
+    private static final int INVALID_POINTER_ID = -1;
+
+    private final Listener mListener;
+    private boolean isInProgress = false;
+    private int mFirstId = INVALID_POINTER_ID;
+    private int mSecondId = INVALID_POINTER_ID;
+    private boolean hasBaseline = false;
+
+    /**
+     * 两根手指上一次的坐标，从手势开始后的第一个MOVE事件开始记录。
+     * onPinchBegin中调用方可能会改变自己的布局或变换，按下事件里的坐标不一定和之后的事件在同一个坐标系
+     */
+    private float mPreX0, mPreY0, mPreX1, mPreY1;
+
+    /**
+     * 一个MOVE事件内累积的变化
+     */
+    private float mSumDx, mSumDy, mSumScale, mSumDegree;
+
+    public PinchRotateDetector(Listener listener) {
+        if (listener == null) {
+            throw new NullPointerException("listener不能为空");
+        }
+        mListener = listener;
+    }
+
+    public boolean isInProgress() {
+        return isInProgress;
+    }
+
+    /**
+     * 第一根手指的id，双指手势因为抬起一根手指结束后就是剩下的那根被跟踪的手指
+     */
+    public int getActivePointerId() {
+        return mFirstId;
+    }
+
+    /**
+     * @param event   触摸事件
+     * @param offsetX 把event中的坐标换算到回调使用的坐标系的偏移
+     * @param offsetY 把event中的坐标换算到回调使用的坐标系的偏移
+     * @return 是否处于双指手势中
+     */
+    public boolean onTouchEvent(MotionEvent event, float offsetX, float offsetY) {
+        switch (event.getActionMasked()) {
+            case MotionEvent.ACTION_DOWN:
+                end();
+                mFirstId = event.getPointerId(0);
+                break;
+            case MotionEvent.ACTION_POINTER_DOWN:
+                if (!isInProgress && mFirstId != INVALID_POINTER_ID) {
+                    begin(event);
+                }
+                break;
+            case MotionEvent.ACTION_MOVE:
+                if (isInProgress) {
+                    move(event, offsetX, offsetY);
+                }
+                break;
+            case MotionEvent.ACTION_POINTER_UP:
+                int upId = event.getPointerId(event.getActionIndex());
+                if (upId == mFirstId || upId == mSecondId) {
+                    //按id找剩下的那根被跟踪的手指，第三根手指不一定在索引0或1之外
+                    int remainingId = upId == mFirstId ? mSecondId : mFirstId;
+                    if (remainingId == INVALID_POINTER_ID) {
+                        remainingId = event.getPointerId(event.getActionIndex() == 0 ? 1 : 0);
+                    }
+                    end();
+                    //剩下的手指作为新的第一根手指，再按下一根手指可以重新开始
+                    mFirstId = remainingId;
+                }
+                break;
+            case MotionEvent.ACTION_UP:
+            case MotionEvent.ACTION_CANCEL:
+                end();
+                mFirstId = INVALID_POINTER_ID;
+                break;
+        }
+        return isInProgress;
+    }
+
+    private void begin(MotionEvent event) {
+        int firstIndex = event.findPointerIndex(mFirstId);
+        int secondIndex = event.getActionIndex();
+        if (firstIndex < 0 || firstIndex == secondIndex) {
+            return;
+        }
+        if (!mListener.onPinchBegin()) {
+            return;
+        }
+        mSecondId = event.getPointerId(secondIndex);
+        hasBaseline = false;
+        isInProgress = true;
+    }
+
+    private void move(MotionEvent event, float offsetX, float offsetY) {
+        int firstIndex = event.findPointerIndex(mFirstId);
+        int secondIndex = event.findPointerIndex(mSecondId);
+        if (firstIndex < 0 || secondIndex < 0) {
+            return;
+        }
+        mSumDx = 0;
+        mSumDy = 0;
+        mSumScale = 1f;
+        mSumDegree = 0;
+        int historySize = event.getHistorySize();
+        if (!hasBaseline) {
+            hasBaseline = true;
+            if (historySize > 0) {
+                mPreX0 = event.getHistoricalX(firstIndex, 0) + offsetX;
+                mPreY0 = event.getHistoricalY(firstIndex, 0) + offsetY;
+                mPreX1 = event.getHistoricalX(secondIndex, 0) + offsetX;
+                mPreY1 = event.getHistoricalY(secondIndex, 0) + offsetY;
+            } else {
+                mPreX0 = event.getX(firstIndex) + offsetX;
+                mPreY0 = event.getY(firstIndex) + offsetY;
+                mPreX1 = event.getX(secondIndex) + offsetX;
+                mPreY1 = event.getY(secondIndex) + offsetY;
+            }
+        }
+        for (int i = 0; i < historySize; i++) {
+            addSample(event.getHistoricalX(firstIndex, i) + offsetX, event.getHistoricalY(firstIndex, i) + offsetY,
+                    event.getHistoricalX(secondIndex, i) + offsetX, event.getHistoricalY(secondIndex, i) + offsetY);
+        }
+        addSample(event.getX(firstIndex) + offsetX, event.getY(firstIndex) + offsetY,
+                event.getX(secondIndex) + offsetX, event.getY(secondIndex) + offsetY);
+        if (mSumDx != 0 || mSumDy != 0 || mSumScale != 1f || mSumDegree != 0) {
+            mListener.onPinch(mSumDx, mSumDy, mSumScale, mSumDegree);
+        }
+    }
+
+    private void addSample(float x0, float y0, float x1, float y1) {
+        //两指中点的移动就是平移
+        mSumDx += (x0 + x1 - mPreX0 - mPreX1) / 2;
+        mSumDy += (y0 + y1 - mPreY0 - mPreY1) / 2;
+        float preSpan = TransformCore.distance(mPreX0, mPreY0, mPreX1, mPreY1);
+        float curSpan = TransformCore.distance(x0, y0, x1, y1);
+        if (preSpan >= MIN_SPAN && curSpan >= MIN_SPAN) {
+            mSumScale *= curSpan / preSpan;
+            double degree = Math.toDegrees(Math.atan2(y1 - y0, x1 - x0) - Math.atan2(mPreY1 - mPreY0, mPreX1 - mPreX0));
+            //跨过±180度时取较小的那个方向
+            if (degree > 180) {
+                degree -= 360;
+            } else if (degree < -180) {
+                degree += 360;
+            }
+            mSumDegree += (float) degree;
+        }
+        mPreX0 = x0;
+        mPreY0 = y0;
+        mPreX1 = x1;
+        mPreY1 = y1;
+    }
+
+    private void end() {
+        mSecondId = INVALID_POINTER_ID;
+        if (isInProgress) {
+            isInProgress = false;
+            mListener.onPinchEnd();
+        }
+    }
+
+    public interface Listener {
+        /**
+         * 第二根手指按下
+         *
+         * @return 返回false时忽略这次双指手势
+         */
+        boolean onPinchBegin();
+
+        /**
+         * 一个MOVE事件内所有采样点累积的变化
+         *
+         * @param dx          两指中点的平移
+         * @param dy          两指中点的平移
+         * @param scaleFactor 两指距离的变化比例
+         * @param degreeDelta 两指连线转过的角度，顺时针为正
+         */
+        void onPinch(float dx, float dy, float scaleFactor, float degreeDelta);
+
+        /**
+         * 其中一根手指抬起或者手势取消
+         */
+        void onPinchEnd();
+    }
+}
@@ -0,0 +1,175 @@
+package com.ccsf.snappingview;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.zip.CRC32;
+import java.util.zip.Deflater;
+
+/**
+ * 按行写入的PNG编码器，像素一段一段地交进来，压缩后直接写到输出流，不需要完整的Bitmap
+ * <p>
+ * 输出8位RGBA，每行使用None滤波；不是线程安全的，同一时间只能在一个线程中调用
+ */
+public class PngStreamEncoder {
+
+    private static final byte[] SIGNATURE = {(byte) 0x89, 'P', 'N', 'G', '\r', '\n', 0x1a, '\n'};
+    private static final byte[] TYPE_IHDR = {'I', 'H', 'D', 'R'};
+    private static final byte[] TYPE_IDAT = {'I', 'D', 'A', 'T'};
+    private static final byte[] TYPE_IEND = {'I', 'E', 'N', 'D'};
+
+    /**
+     * 每个IDAT块的最大长度
+     */
+    private static final int CHUNK_SIZE = 64 * 1024;
+
+    private final OutputStream mOut;
+    private final int mWidth, mHeight;
+    private final Deflater mDeflater;
+    private final CRC32 mCrc = new CRC32();
+    private final byte[] mRow;
+    private final byte[] mChunk = new byte[CHUNK_SIZE];
+    private final byte[] mIntBuffer = new byte[4];
+    private int mChunkLength;
+    private int mRowsWritten;
+    private boolean isHeaderWritten;
+    private boolean isReleased;
+
+    /**
+     * @param out              输出流，编码器不会关闭它
+     * @param width            图片宽度
+     * @param height           图片高度
+     * @param compressionLevel Deflater的压缩级别
+     */
+    public PngStreamEncoder(OutputStream out, int width, int height, int compressionLevel) {
+        if (out == null) {
+            throw new NullPointerException("out不能为空");
+        }
+        if (width <= 0 || height <= 0) {
+            throw new IllegalArgumentException("宽高必须大于0");
+        }
+        mOut = out;
+        mWidth = width;
+        mHeight = height;
+        mDeflater = new Deflater(compressionLevel);
+        mRow = new byte[1 + width * 4];
+    }
+
+    /**
+     * 写入文件头和IHDR
+     *
+     * @throws IOException
+     */
+    public void writeHeader() throws IOException {
+        if (isHeaderWritten) {
+            return;
+        }
+        mOut.write(SIGNATURE);
+        byte[] ihdr = new byte[13];
+        putInt(ihdr, 0, mWidth);
+        putInt(ihdr, 4, mHeight);
+        ihdr[8] = 8;  //位深
+        ihdr[9] = 6;  //RGBA
+        ihdr[10] = 0; //压缩方式
+        ihdr[11] = 0; //滤波方式
+        ihdr[12] = 0; //不隔行
+        writeChunk(TYPE_IHDR, ihdr, 13);
+        isHeaderWritten = true;
+    }
+
+    /**
+     * 写入若干行像素
+     *
+     * @param pixels 非预乘的ARGB像素，和Bitmap.getPixels的结果一致
+     * @param offset 第一行第一个像素在数组中的位置
+     * @param stride 相邻两行在数组中的间隔
+     * @param rows   行数
+     * @throws IOException
+     */
+    public void writeRows(int[] pixels, int offset, int stride, int rows) throws IOException {
+        if (!isHeaderWritten) {
+            writeHeader();
+        }
+        if (mRowsWritten + rows > mHeight) {
+            throw new IllegalStateException("写入的行数超过图片高度");
+        }
+        for (int r = 0; r < rows; r++) {
+            int start = offset + r * stride;
+            mRow[0] = 0;
+            int pos = 1;
+            for (int x = 0; x < mWidth; x++) {
+                int color = pixels[start + x];
+                mRow[pos++] = (byte) (color >> 16);
+                mRow[pos++] = (byte) (color >> 8);
+                mRow[pos++] = (byte) color;
+                mRow[pos++] = (byte) (color >>> 24);
+            }
+            mDeflater.setInput(mRow, 0, mRow.length);
+            while (!mDeflater.needsInput()) {
+                deflate();
+            }
+        }
+        mRowsWritten += rows;
+    }
+
+    /**
+     * 写完所有行后调用，写入剩余的压缩数据和IEND，不关闭输出流
+     *
+     * @throws IOException
+     */
+    public void finish() throws IOException {
+        if (mRowsWritten != mHeight) {
+            throw new IllegalStateException("写入的行数" + mRowsWritten + "和图片高度" + mHeight + "不一致");
+        }
+        mDeflater.finish();
+        while (!mDeflater.finished()) {
+            deflate();
+        }
+        flushChunk();
+        writeChunk(TYPE_IEND, mChunk, 0);
+        release();
+        mOut.flush();
+    }
+
+    /**
+     * 释放Deflater的native内存，finish会自动调用；写入失败放弃编码时需要调用，可以重复调用
+     */
+    public void release() {
+        if (!isReleased) {
+            isReleased = true;
+            mDeflater.end();
+        }
+    }
+
+    private void deflate() throws IOException {
+        mChunkLength += mDeflater.deflate(mChunk, mChunkLength, CHUNK_SIZE - mChunkLength);
+        if (mChunkLength == CHUNK_SIZE) {
+            flushChunk();
+        }
+    }
+
+    private void flushChunk() throws IOException {
+        if (mChunkLength > 0) {
+            writeChunk(TYPE_IDAT, mChunk, mChunkLength);
+            mChunkLength = 0;
+        }
+    }
+
+    private void writeChunk(byte[] type, byte[] data, int length) throws IOException {
+        putInt(mIntBuffer, 0, length);
+        mOut.write(mIntBuffer);
+        mOut.write(type);
+        mOut.write(data, 0, length);
+        mCrc.reset();
+        mCrc.update(type);
+        mCrc.update(data, 0, length);
+        putInt(mIntBuffer, 0, (int) mCrc.getValue());
+        mOut.write(mIntBuffer);
+    }
+
+    private static void putInt(byte[] buffer, int offset, int value) {
+        buffer[offset] = (byte) (value >>> 24);
+        buffer[offset + 1] = (byte) (value >>> 16);
+        buffer[offset + 2] = (byte) (value >>> 8);
+        buffer[offset + 3] = (byte) value;
+    }
+}
@@ -1,9 +1,8 @@
 package com.ccsf.snappingview;
 
-import android.annotation.SuppressLint;
 import android.content.Context;
+import android.content.res.Resources;
 import android.graphics.Bitmap;
-import android.graphics.BitmapFactory;
 import android.graphics.Canvas;
 import android.graphics.Color;
 import android.graphics.Matrix;
@@ -12,12 +11,14 @@ import android.graphics.Paint.Style;
 import android.graphics.Path;
 import android.graphics.Point;
 import android.graphics.PointF;
+import android.graphics.RectF;
 import android.graphics.drawable.Drawable;
+import android.os.Parcelable;
 import android.text.Layout;
 import android.text.StaticLayout;
 import android.text.TextPaint;
+import android.text.TextUtils;
 import android.util.AttributeSet;
-import android.util.Log;
 import android.view.Gravity;
 import android.view.MotionEvent;
 import android.view.View;
@@ -27,10 +28,14 @@ import android.widget.RelativeLayout;
 import androidx.annotation.Nullable;
 
 import java.util.ArrayList;
-import java.util.Arrays;
-import java.util.Collections;
 import java.util.List;
 
+/**
+ * 可以拖动、旋转、缩放的贴纸
+ * <p>
+ * 状态通过StickerSavedState保存和恢复，系统只保存有id的View，需要恢复时要用setId设置一个固定的id，
+ * 同一个界面中的贴纸id不能重复
+ */
 public class SignatureTextView extends View {
 
     private String drawableString;
@@ -115,6 +120,106 @@ public class SignatureTextView extends View {
     private Point mRBPoint = new Point();
     private Point mLBPoint = new Point();
     private Point cp = new Point();
+    /**
+     * 内容的中心点、缩放和旋转，四个角由它统一计算
+     */
+    private final TransformCore mTransformCore = new TransformCore();
+    /**
+     * 上一次和这一次绘制范围，变换后只刷新两者的并集
+     */
+    private final DirtyRegion mDirtyRegion = new DirtyRegion();
+    /**
+     * 一帧内的MOVE事件合并到下一帧统一处理
+     */
+    private final MoveCoalescer mMoveCoalescer = new MoveCoalescer(new MoveCoalescer.Callback() {
+        @Override
+        public void onCoalescedMove(float preX, float preY, float curX, float curY, float degreeDelta) {
+            applyMove(preX, preY, curX, curY, degreeDelta);
+        }
+    });
+    /**
+     * 双指平移、缩放和旋转，和控制点修改的是同一份中心点、角度和缩放
+     */
+    private final PinchRotateDetector mPinchDetector = new PinchRotateDetector(new PinchRotateDetector.Listener() {
+        @Override
+        public boolean onPinchBegin() {
+            return beginPinch();
+        }
+
+        @Override
+        public void onPinch(float dx, float dy, float scaleFactor, float degreeDelta) {
+            applyPinch(dx, dy, scaleFactor, degreeDelta);
+        }
+
+        @Override
+        public void onPinchEnd() {
+        }
+    });
+    /**
+     * 拖动松手后的惯性滑动
+     */
+    private final FlingHelper mFlingHelper = new FlingHelper(this, new FlingHelper.Callback() {
+        @Override
+        public void onFlingMove(int dx, int dy) {
+            mCenterPoint.x += dx;
+            mCenterPoint.y += dy;
+            adjustLayout();
+        }
+
+        @Override
+        public void onFlingEnd() {
+            mStatus = STATUS_INIT;
+            commitLayoutParams();
+            commitHistory();
+        }
+    });
+    /**
+     * 角度和缩放吸附，手势中累积原始角度，显示吸附后的值
+     */
+    private final ValueSnapper mDegreeSnapper = ValueSnapper.forDegree();
+    private final ValueSnapper mScaleSnapper = ValueSnapper.forScale();
+    private boolean isSnapEnabled = true;
+    private boolean isSnapToFitWidth = false;
+    private float mRawDegree;
+    /**
+     * 拖动时吸附到父布局和其他贴纸的边缘、中心，辅助线画在父布局的Overlay上
+     */
+    private final AlignmentGuide mAlignmentGuide = new AlignmentGuide();
+    private final RectF mAlignBounds = new RectF();
+    private AlignmentGuide.GuideDrawable mGuideDrawable;
+    private boolean isAlignEnabled = true;
+    private boolean isAligning = false;
+    private float mRawCenterX, mRawCenterY;
+    /**
+     * 撤销、重做，只保存手势前后的中心点、角度、缩放（缩放保存的是字号）和文字内容
+     */
+    private final TransformHistory<SignatureTextView> mHistory = new TransformHistory<>(new TransformHistory.Callback<SignatureTextView>() {
+        @Override
+        public void onApplyTransform(SignatureTextView target, float centerX, float centerY, float degree, float scale) {
+            applyHistoryTransform(centerX, centerY, degree, scale);
+        }
+
+        @Override
+        public void onApplyContent(SignatureTextView target, Object content) {
+            if (content instanceof String) {
+                applyText((String) content);
+            }
+        }
+
+        @Override
+        public void onAdd(SignatureTextView target, int index) {
+        }
+
+        @Override
+        public void onRemove(SignatureTextView target) {
+        }
+    });
+    private float mHistoryX, mHistoryY, mHistoryDegree, mHistoryScale;
+    private boolean isHistoryPending = false;
+    /**
+     * 双指手势开始时的缩放和之后累积的比例
+     */
+    private float mPinchStartScale, mPinchScale;
     /**
      * 用于缩放，旋转的控制点的坐标
      */
@@ -180,6 +285,14 @@ public class SignatureTextView extends View {
      */
     public static final int STATUS_TIMESTAMP = 6;
     public static final int STATUS_OUT = 7;
+    /**
+     * 双指手势
+     */
+    public static final int STATUS_PINCH = 8;
+    /**
+     * 松手后惯性滑动
+     */
+    public static final int STATUS_FLING = 9;
     /**
      * 当前所处的状态
      */
@@ -207,6 +320,10 @@ public class SignatureTextView extends View {
 
     private PointF mPreMovePointF = new PointF();
     private PointF mCurMovePointF = new PointF();
+    /**
+     * 拖动的手指，双指手势结束后是剩下的那根手指
+     */
+    private int mDragPointerId = MotionEvent.INVALID_POINTER_ID;
     private boolean isClick = true;
     /**
      * 控制图标所在的位置（比如左上，右上，左下，右下）
@@ -219,6 +336,26 @@ public class SignatureTextView extends View {
     private int leftEditBitmapOffset;
     private int topEditBitmapOffset;
     private List<Bitmap> tabBitmapList = new ArrayList<>();
+    private int[] tabResIds = new int[0];
+    private boolean isIconsAcquired = false;
+
+    /**
+     * 是否通过View属性（平移、旋转、缩放）驱动手势，手势过程中不做measure、layout和onDraw
+     */
+    private boolean isPropertyTransformEnabled = false;
+    private boolean isPropertyGesture = false;
+    /**
+     * 手势开始时已经提交的中心点、角度和缩放
+     */
+    private float mCommitCenterX, mCommitCenterY, mCommitDegree, mCommitScale;
+    /**
+     * 父布局坐标与屏幕坐标的差值，View属性变换后getX/getY不再可靠，手势过程中改用getRawX/getRawY
+     */
+    private float mRawOffsetX, mRawOffsetY;
+    /**
+     * 位置是否已经通过布局参数提交，之后onLayout不再把中心点放回父布局中心
+     */
+    private boolean isPositionCommitted = false;
     private IClickListener mClickListener = null;
 
     public SignatureTextView(Context context, AttributeSet attrs) {
@@ -226,6 +363,13 @@ public class SignatureTextView extends View {
     }
 
     public SignatureTextView(Context context, String content, int tabNum) {
+        this(context, content, tabNum, false);
+    }
+
+    /**
+     * @param isAsyncLayout 为true时在后台线程测量和排版，完成前先显示占位文字
+     */
+    public SignatureTextView(Context context, String content, int tabNum, boolean isAsyncLayout) {
         this(context, null);
         this.content = content;
         textPaint = new TextPaint();
@@ -233,44 +377,131 @@ public class SignatureTextView extends View {
         int defaultSize = 34;
         textPaint.setTextSize(defaultSize);
         textPaint.setAntiAlias(true);
-        int contentWidth = (int) textPaint.measureText(content);
-        staticLayout = new StaticLayout(content, textPaint, contentWidth, textAlign, 1.0f, 0.0f, false);
+        if (isAsyncLayout) {
+            startAsyncLayout();
+        } else {
+            int contentWidth = (int) textPaint.measureText(content);
+            staticLayout = new StaticLayout(content, textPaint, contentWidth, textAlign, 1.0f, 0.0f, false);
+        }
         initTab(tabNum);
         setInitContentSize(staticLayout.getWidth(), staticLayout.getHeight());
         init();
     }
 
+    /**
+     * 先显示占位文字，在后台线程测量和排版content
+     */
+    private void startAsyncLayout() {
+        isLayoutPending = true;
+        int placeholderWidth = (int) textPaint.measureText(LAYOUT_PLACEHOLDER);
+        staticLayout = new StaticLayout(LAYOUT_PLACEHOLDER, textPaint, placeholderWidth, textAlign, 1.0f, 0.0f, false);
+        final String loadingContent = content;
+        TextLayoutLoader.load(content, textPaint, -1, textAlign, new TextLayoutLoader.Callback() {
+            @Override
+            public void onLayoutReady(StaticLayout layout) {
+                //排版期间内容可能已经被替换
+                if (TextUtils.equals(loadingContent, content)) {
+                    onAsyncLayoutReady(layout);
+                }
+            }
+        });
+    }
+
+    /**
+     * 后台排版完成，替换占位文字并按新的内容尺寸重新布局
+     */
+    private void onAsyncLayoutReady(StaticLayout layout) {
+        if (!isLayoutPending) {
+            //排版期间内容已经被setText替换
+            return;
+        }
+        mLayoutCache.put(layout, content, textPaint, layout.getWidth(), textAlign);
+        staticLayout = layout;
+        isLayoutPending = false;
+        setInitContentSize(layout.getWidth(), layout.getHeight());
+        transformDraw();
+        relayoutAtCenter();
+    }
+
+    /**
+     * 尺寸变化后重新布局，位置已经提交过时按当前中心点更新布局参数
+     */
+    private void relayoutAtCenter() {
+        if (isPositionCommitted && getLayoutParams() instanceof RelativeLayout.LayoutParams) {
+            commitLayoutParams();
+        } else {
+            requestLayout();
+        }
+    }
+
     private void initTab(int tabNum) {
         switch (tabNum) {
             case 1:
-                Bitmap deleteFilletBitmap = BitmapFactory.decodeResource(getContext().getResources(), R.mipmap.tab_delete_fillet);
-                tabBitmapList.add(deleteFilletBitmap);
+                tabResIds = new int[]{R.mipmap.tab_delete_fillet};
                 break;
             case 2:
-                Bitmap deleteBitmap = BitmapFactory.decodeResource(getContext().getResources(), R.mipmap.tab_delete);
-                tabBitmapList.add(deleteBitmap);
-                Bitmap timeBitmap = BitmapFactory.decodeResource(getContext().getResources(), R.mipmap.tab_time);
-                tabBitmapList.add(timeBitmap);
+                tabResIds = new int[]{R.mipmap.tab_delete, R.mipmap.tab_time};
                 break;
             case 3:
-                Bitmap dBitmap = BitmapFactory.decodeResource(getContext().getResources(), R.mipmap.tab_delete);
-                tabBitmapList.add(dBitmap);
-                Bitmap editBitmap = BitmapFactory.decodeResource(getContext().getResources(), R.mipmap.tab_edit);
-                tabBitmapList.add(editBitmap);
-                Bitmap tBitmap = BitmapFactory.decodeResource(getContext().getResources(), R.mipmap.tab_time);
-                tabBitmapList.add(tBitmap);
+                tabResIds = new int[]{R.mipmap.tab_delete, R.mipmap.tab_edit, R.mipmap.tab_time};
                 break;
         }
-        if (!tabBitmapList.isEmpty()) {
-            editBitmapWidth = tabBitmapList.get(0).getWidth();
-            editBitmapHeight = tabBitmapList.get(0).getHeight();
+    }
+
+    /**
+     * 从共享缓存中获取操作按钮和控制图标
+     */
+    private void acquireIcons() {
+        if (isIconsAcquired) {
+            return;
+        }
+        Resources res = getContext().getResources();
+        tabBitmapList.clear();
+        for (int resId : tabResIds) {
+            tabBitmapList.add(IconPool.acquireBitmap(res, resId));
+        }
+        zoomDrawable = IconPool.acquireDrawable(res, R.mipmap.icon_zoom);
+        rotateDrawable = IconPool.acquireDrawable(res, R.mipmap.icon_rotate);
+        isIconsAcquired = true;
+    }
+
+    /**
+     * 归还共享的图标，最后一个使用者归还后缓存才会移除
+     */
+    private void releaseIcons() {
+        if (!isIconsAcquired) {
+            return;
+        }
+        Resources res = getContext().getResources();
+        for (int resId : tabResIds) {
+            IconPool.releaseBitmap(res, resId);
         }
+        IconPool.releaseDrawable(res, R.mipmap.icon_zoom);
+        IconPool.releaseDrawable(res, R.mipmap.icon_rotate);
+        isIconsAcquired = false;
+    }
+
+    @Override
+    protected void onAttachedToWindow() {
+        super.onAttachedToWindow();
+        acquireIcons();
+    }
+
+    @Override
+    protected void onDetachedFromWindow() {
+        super.onDetachedFromWindow();
+        mMoveCoalescer.cancel();
+        mFlingHelper.recycle();
+        endAlign();
+        releaseIcons();
+        mRasterCache.clear();
     }
 
     @Override
     protected void onLayout(boolean changed, int left, int top, int right, int bottom) {
         super.onLayout(changed, left, top, right, bottom);
-        if (changed && mStatus == STATUS_INIT) {
+        //位置提交到布局参数之后不再放回父布局中心
+        if (changed && mStatus == STATUS_INIT && !isPositionCommitted) {
             ViewGroup mViewGroup = (ViewGroup) getParent();
             if (null != mViewGroup) {
                 int parentWidth = mViewGroup.getWidth();
@@ -282,6 +513,50 @@ public class SignatureTextView extends View {
         }
     }
 
+    @Override
+    protected Parcelable onSaveInstanceState() {
+        StickerSavedState ss = new StickerSavedState(super.onSaveInstanceState());
+        ss.content = content;
+        ss.centerX = mCenterPoint.x;
+        ss.centerY = mCenterPoint.y;
+        ss.degree = mDegree;
+        ss.scale = textSize;
+        ss.textColor = textColor;
+        ss.textAlign = textAlign.ordinal();
+        ss.isEditable = isEditable;
+        return ss;
+    }
+
+    /**
+     * 只恢复数值状态，文字内容有变化时在后台重新排版
+     */
+    @Override
+    protected void onRestoreInstanceState(Parcelable state) {
+        if (!(state instanceof StickerSavedState)) {
+            super.onRestoreInstanceState(state);
+            return;
+        }
+        StickerSavedState ss = (StickerSavedState) state;
+        super.onRestoreInstanceState(ss.getSuperState());
+        mCenterPoint.set(ss.centerX, ss.centerY);
+        mDegree = ss.degree;
+        textSize = Math.round(ss.scale);
+        textColor = ss.textColor;
+        textAlign = ss.getTextAlign(textAlign);
+        isEditable = ss.isEditable;
+        if (textPaint != null) {
+            textPaint.setColor(textColor);
+        }
+        if (ss.content != null && textPaint != null && !ss.content.equals(content)) {
+            content = ss.content;
+            startAsyncLayout();
+            setInitContentSize(staticLayout.getWidth(), staticLayout.getHeight());
+        }
+        isPositionCommitted = true;
+        transformDraw();
+        relayoutAtCenter();
+    }
+
     public SignatureTextView(Context context, AttributeSet attrs, int defStyle) {
         super(context, attrs, defStyle);
     }
@@ -292,19 +567,20 @@ public class SignatureTextView extends View {
         mPaint.setColor(frameColor);
         mPaint.setStrokeWidth(frameWidth);
         mPaint.setStyle(Style.STROKE);
-        if (zoomDrawable == null) {
-            zoomDrawable = getContext().getResources().getDrawable(R.mipmap.icon_zoom);
-        }
-        if (rotateDrawable == null) {
-            rotateDrawable = getContext().getResources().getDrawable(R.mipmap.icon_rotate);
-        }
-        mDrawableWidth = zoomDrawable.getIntrinsicWidth();
-        mDrawableHeight = zoomDrawable.getIntrinsicHeight();
+        //图标在onAttachedToWindow中才获取，这里只查询尺寸，不占用引用计数
+        Resources res = getContext().getResources();
+        Drawable zoom = IconPool.peekDrawable(res, R.mipmap.icon_zoom);
+        mDrawableWidth = zoom.getIntrinsicWidth();
+        mDrawableHeight = zoom.getIntrinsicHeight();
         halfDrawableWidth = mDrawableWidth / 2;
         halfDrawableHeight = mDrawableHeight / 2;
-        if (rotateDrawable != null) {
-            mDeleteDrawableHeight = rotateDrawable.getIntrinsicHeight();
-            mDeleteDrawableWidth = rotateDrawable.getIntrinsicWidth();
+        Drawable rotate = IconPool.peekDrawable(res, R.mipmap.icon_rotate);
+        mDeleteDrawableHeight = rotate.getIntrinsicHeight();
+        mDeleteDrawableWidth = rotate.getIntrinsicWidth();
+        if (tabResIds.length > 0) {
+            Drawable tab = IconPool.peekDrawable(res, tabResIds[0]);
+            editBitmapWidth = tab.getIntrinsicWidth();
+            editBitmapHeight = tab.getIntrinsicHeight();
         }
         mControlPoint = LocationToPoint(controlLocation);
         mDeletePoint = LocationToPoint(DEFAULT_DELETE_LOCATION);
@@ -329,23 +605,95 @@ public class SignatureTextView extends View {
         return editBitmapHeight;
     }
 
+    /**
+     * 按当前的缩放和旋转导出内容，裁剪到旋转后的外接矩形，不包含边框和控制图标，也不改变可编辑状态
+     *
+     * @return
+     */
     public Bitmap getSignatureViewBitmap() {
-        isEditable = false;
-        invalidate();
-        setDrawingCacheEnabled(true);
-        buildDrawingCache();  //启用DrawingCache并创建位图
-        Bitmap bitmap = Bitmap.createBitmap(getDrawingCache()); //创建一个DrawingCache的拷贝，因为DrawingCache得到的位图在禁用后会被回收
-        setDrawingCacheEnabled(false);  //禁用DrawingCahce否则会影响性能
-        return bitmap;
+        return new StickerExporter().export(toElement(), 1f);
+    }
+
+    /**
+     * 生成当前内容和变换的快照，可以交给StickerExporter在子线程导出或者放到StickerCanvasView中
+     *
+     * @return
+     */
+    public StickerElement toElement() {
+        if (staticLayout == null) {
+            throw new NullPointerException("内容不允许为空");
+        }
+        StickerElement element = new TextStickerElement(content, textPaint, staticLayout.getWidth(), textAlign);
+        TransformCore transform = element.getTransform();
+        transform.setCenter(mCenterPoint.x, mCenterPoint.y);
+        transform.setDegree(mDegree);
+        //手势快照期间排版还停留在开始时的字号，用缩放补上差值
+        transform.setScale(isSnapshotActive ? (float) textSize / mSnapshotTextSize : 1f);
+        transform.update();
+        return element;
     }
 
     private String content;
     private StaticLayout staticLayout;
+    /**
+     * 按当前字号和宽度排版的缓存，拖动时不需要重新排版
+     */
+    private StaticLayoutCache mLayoutCache = new StaticLayoutCache();
+    /**
+     * 异步排版还没有完成，staticLayout是占位文字
+     */
+    private boolean isLayoutPending = false;
+    private static final String LAYOUT_PLACEHOLDER = "…";
     private TextPaint textPaint;
     private int textColor = Color.BLACK;
     private Layout.Alignment textAlign = Layout.Alignment.ALIGN_CENTER;
     private int textSize = 34;
 
+    /**
+     * 手势过程中是否使用文字快照绘制，松手后才按实际字号重新排版
+     */
+    private boolean isGestureSnapshotEnabled = true;
+    private boolean isSnapshotActive = false;
+    /**
+     * 按字号档位缓存的文字栅格，手势中绘制最接近的一档
+     */
+    private final TextRasterCache mRasterCache = new TextRasterCache();
+    private TextRasterCache.Entry mSnapshotEntry;
+    private Paint mSnapshotPaint = new Paint(Paint.FILTER_BITMAP_FLAG);
+    /**
+     * 手势开始时的字号，staticLayout仍然是按这个字号排版的
+     */
+    private int mSnapshotTextSize;
+
+    public String getText() {
+        return content;
+    }
+
+    /**
+     * 修改文字内容，按默认字号重新测量排版宽度，可以撤销
+     */
+    public void setText(String text) {
+        if (text == null) {
+            throw new NullPointerException("text不能为空");
+        }
+        if (text.equals(content)) {
+            return;
+        }
+        mFlingHelper.stop();
+        mHistory.recordContent(this, content, text);
+        applyText(text);
+    }
+
+    private void applyText(String text) {
+        content = text;
+        //后台还没有完成的旧内容排版不再使用
+        isLayoutPending = false;
+        textPaint.setTextSize(34);
+        StaticLayout layout = mLayoutCache.obtain(content, textPaint, (int) textPaint.measureText(content), textAlign);
+        setInitContentSize(layout.getWidth(), layout.getHeight());
+        transformDraw();
+    }
+
     public void setTextColor(int color) {
         this.textColor = color;
     }
@@ -368,6 +716,43 @@ public class SignatureTextView extends View {
         return textAlign;
     }
 
+    /**
+     * 设置手势过程中是否使用文字快照代替实时排版
+     *
+     * @param enabled
+     */
+    public void setGestureSnapshotEnabled(boolean enabled) {
+        this.isGestureSnapshotEnabled = enabled;
+    }
+
+    /**
+     * 手势开始时以当前排版为基准，手势过程中按字号档位取缓存的栅格，只对栅格做矩阵变换
+     */
+    private void startGestureSnapshot() {
+        if (!isGestureSnapshotEnabled || staticLayout == null || isLayoutPending) {
+            return;
+        }
+        if (staticLayout.getWidth() <= 0 || staticLayout.getHeight() <= 0) {
+            return;
+        }
+        //基准没有变化时保留之前手势中生成的档位
+        mRasterCache.setBase(content, textPaint, staticLayout.getWidth(), textSize, textAlign);
+        mSnapshotTextSize = textSize;
+        mSnapshotEntry = mRasterCache.obtain(textSize);
+        isSnapshotActive = true;
+    }
+
+    /**
+     * 手势结束，按最终字号重新排版
+     */
+    private void endGestureSnapshot() {
+        if (isSnapshotActive) {
+            isSnapshotActive = false;
+            mSnapshotEntry = null;
+            transformDraw();
+        }
+    }
+
 //    public void setDrawText(String content) {
 //        this.content = content;
 //        textPaint = new TextPaint();
@@ -390,7 +775,58 @@ public class SignatureTextView extends View {
         return mWidthScale;
     }
 
-    @SuppressLint("DrawAllocation")
+    /**
+     * 设置是否使用View属性驱动拖动、旋转和缩放，松手时才提交到布局
+     *
+     * @param enabled
+     */
+    public void setPropertyTransformEnabled(boolean enabled) {
+        this.isPropertyTransformEnabled = enabled;
+    }
+
+    /**
+     * 记录手势开始时的状态，后续变化只映射到View属性上
+     */
+    private void beginPropertyGesture(MotionEvent event) {
+        mRawOffsetX = event.getX() + mViewPaddingLeft - event.getRawX();
+        mRawOffsetY = event.getY() + mViewPaddingTop - event.getRawY();
+        mCommitCenterX = mCenterPoint.x;
+        mCommitCenterY = mCenterPoint.y;
+        mCommitDegree = mDegree;
+        mCommitScale = textSize;
+        setPivotX(cp.x + halfDrawableWidth);
+        setPivotY(cp.y + halfDrawableHeight);
+        isPropertyGesture = true;
+    }
+
+    /**
+     * 把当前的中心点、角度和缩放映射到View属性上，由RenderThread完成绘制
+     */
+    private void applyPropertyTransform() {
+        float scale = textSize / mCommitScale;
+        setTranslationX(mCenterPoint.x - mCommitCenterX);
+        setTranslationY(mCenterPoint.y - mCommitCenterY);
+        setRotation(mDegree - mCommitDegree);
+        setScaleX(scale);
+        setScaleY(scale);
+    }
+
+    /**
+     * 手势结束，清除View属性并把最终状态提交到布局
+     */
+    private void commitPropertyGesture() {
+        if (!isPropertyGesture) {
+            return;
+        }
+        isPropertyGesture = false;
+        setTranslationX(0);
+        setTranslationY(0);
+        setRotation(0);
+        setScaleX(1);
+        setScaleY(1);
+        transformDraw();
+    }
+
     @Override
     protected void onDraw(Canvas canvas) {
         super.onDraw(canvas);
@@ -402,7 +838,11 @@ public class SignatureTextView extends View {
             canvas.translate(mDrawableWidth / 2 + offsetLeft, mDrawableHeight / 2 + offsetTop);
             //绕着图片中心进行旋转
             canvas.rotate(mDegree, mContentWidth / 2, mContentHeight / 2);
-            staticLayout.draw(canvas);
+            if (isSnapshotActive) {
+                canvas.drawBitmap(mSnapshotEntry.bitmap, matrix, mSnapshotPaint);
+            } else {
+                staticLayout.draw(canvas);
+            }
             canvas.restore();
         }
         //处于可编辑状态才画边框和控制图标
@@ -464,15 +904,28 @@ public class SignatureTextView extends View {
      */
     private void transformDraw() {
         transform();
-        invalidate();
+        invalidateDirty();
         adjustLayout();
     }
 
     private void transform() {
-        setContentWidth();
-        textPaint.setTextSize(textSize);
-        staticLayout = new StaticLayout(content, textPaint, mContentWidth, textAlign, 1.0f, 0.0f, false);
-        setContentHeight();
+        if (isSnapshotActive) {
+            //手势过程中取最接近的字号档位，只按剩余的比例缩放，不重新排版
+            mSnapshotEntry = mRasterCache.obtain(textSize);
+            float snapshotScale = (float) textSize / mSnapshotEntry.textSize;
+            mContentWidth = (int) (mSnapshotEntry.bitmap.getWidth() * snapshotScale);
+            mContentHeight = (int) (mSnapshotEntry.bitmap.getHeight() * snapshotScale);
+            matrix.setScale(snapshotScale, snapshotScale);
+        } else if (isLayoutPending) {
+            //后台排版完成前按占位文字的尺寸显示
+            mContentWidth = staticLayout.getWidth();
+            mContentHeight = staticLayout.getHeight();
+        } else {
+            setContentWidth();
+            textPaint.setTextSize(textSize);
+            staticLayout = mLayoutCache.obtain(content, textPaint, mContentWidth, textAlign);
+            setContentHeight();
+        }
         mViewWidth = getViewWidth();
         mViewHeight = getViewHeight();
         int offsetTop = mViewHeight / 2 - (mContentHeight / 2) - mDrawableHeight + getEditBitMapOffsetHeight() - framePadding;
@@ -481,7 +934,8 @@ public class SignatureTextView extends View {
     }
 
     private int getAllEditBitmapWidth() {
-        return (editBitmapWidth * tabBitmapList.size()) + (DEFAULT_EDIT_BITMAP_PADDING * (tabBitmapList.size() - 1));
+        //attach之前tabBitmapList还是空的，按资源数量计算
+        return (editBitmapWidth * tabResIds.length) + (DEFAULT_EDIT_BITMAP_PADDING * (tabResIds.length - 1));
     }
 
     @Override
@@ -490,17 +944,36 @@ public class SignatureTextView extends View {
     }
 
     public boolean onTouchEvent(MotionEvent event) {
-        switch (event.getAction()) {
+        if (event.getActionMasked() == MotionEvent.ACTION_DOWN) {
+            //按下时停止惯性滑动并提交位置
+            mFlingHelper.stop();
+        }
+        if (isPropertyGesture) {
+            mFlingHelper.addMovement(event, event.getRawX() + mRawOffsetX - event.getX(), event.getRawY() + mRawOffsetY - event.getY());
+        } else {
+            mFlingHelper.addMovement(event, mViewPaddingLeft, mViewPaddingTop);
+        }
+        mPinchDetector.onTouchEvent(event, mViewPaddingLeft, mViewPaddingTop);
+        switch (event.getActionMasked()) {
             case MotionEvent.ACTION_DOWN:
+                mDragPointerId = event.getPointerId(0);
                 if (event.getX() > leftEditBitmapOffset && event.getX() < getAllEditBitmapWidth() + leftEditBitmapOffset
                         && event.getY() > topEditBitmapOffset && event.getY() < topEditBitmapOffset + editBitmapHeight) {
                     isClick = false;
                     setStateWhenClickTab(event);
                 } else {
                     mStatus = JudgeStatus(event.getX(), event.getY());
-                    if (mStatus != STATUS_OUT || isPolygonContainsPoint(new Point((int) event.getX(), (int) event.getY()), mRTPoint, mRBPoint, mLBPoint, mLTPoint)) {
+                    if (mStatus != STATUS_OUT || mTransformCore.contains(event.getX(), event.getY())) {
                         isEditable = true;
                         mPreMovePointF.set(event.getX() + mViewPaddingLeft, event.getY() + mViewPaddingTop);
+                        if (isPropertyTransformEnabled) {
+                            beginPropertyGesture(event);
+                        } else if (mStatus == STATUS_ZOOM || mStatus == STATUS_ROTATE) {
+                            startGestureSnapshot();
+                        }
+                        mMoveCoalescer.begin(mPreMovePointF.x, mPreMovePointF.y);
+                        beginSnap();
+                        beginHistory();
                     } else {
                         return super.onTouchEvent(event);
                     }
@@ -508,13 +981,20 @@ public class SignatureTextView extends View {
 
                 break;
             case MotionEvent.ACTION_UP:
+                //先处理还没有到下一帧的移动
+                mMoveCoalescer.flush();
+                endAlign();
                 isShowEditBitmap = true;
+                boolean isFling = false;
                 if (mStatus == STATUS_DRAG || mStatus == STATUS_ZOOM || mStatus == STATUS_ROTATE) {
-                    invalidate();
-                    RelativeLayout.LayoutParams lp = (RelativeLayout.LayoutParams) this.getLayoutParams();
-                    lp.setMargins(mViewPaddingLeft, mViewPaddingTop, 0, 0);
-                    lp.removeRule(RelativeLayout.CENTER_IN_PARENT);
-                    setLayoutParams(lp);
+                    commitPropertyGesture();
+                    endGestureSnapshot();
+                    invalidateDirty();
+                    //拖动松手时按手指速度继续滑动，滑动结束再提交布局参数
+                    isFling = mStatus == STATUS_DRAG && startFling(event);
+                    if (!isFling) {
+                        commitLayoutParams();
+                    }
                 } else if (mClickListener != null) {
                     if (isClick) {
                         mClickListener.onClickView();
@@ -532,28 +1012,48 @@ public class SignatureTextView extends View {
                         }
                     }
                 }
+                //没有发生拖动、旋转、缩放时不需要提交
+                isPropertyGesture = false;
                 isClick = true;
-                mStatus = STATUS_INIT;
+                mStatus = isFling ? STATUS_FLING : STATUS_INIT;
+                if (!isFling) {
+                    commitHistory();
+                }
+                break;
+            case MotionEvent.ACTION_POINTER_UP:
+                if (mStatus == STATUS_PINCH && !mPinchDetector.isInProgress()) {
+                    endPinch(event);
+                }
                 break;
             case MotionEvent.ACTION_MOVE:
-                mCurMovePointF.set(event.getX() + mViewPaddingLeft, event.getY() + mViewPaddingTop);
-                if (mStatus == STATUS_OUT && distance4PointF(mPreMovePointF, mCurMovePointF) >= 10) {//移动超过10才算滑动
+                //getRawX只有第一根手指的，View属性后端只在单指手势中使用
+                int dragIndex = isPropertyGesture ? 0 : Math.max(0, event.findPointerIndex(mDragPointerId));
+                if (isPropertyGesture) {
+                    mCurMovePointF.set(event.getRawX() + mRawOffsetX, event.getRawY() + mRawOffsetY);
+                } else {
+                    mCurMovePointF.set(event.getX(dragIndex) + mViewPaddingLeft, event.getY(dragIndex) + mViewPaddingTop);
+                }
+                if (mStatus == STATUS_OUT && TransformCore.distance(mPreMovePointF.x, mPreMovePointF.y, mCurMovePointF.x, mCurMovePointF.y) >= 10) {//移动超过10才算滑动
                     mStatus = STATUS_DRAG;
                 }
                 if (mStatus == STATUS_DRAG || mStatus == STATUS_ZOOM || mStatus == STATUS_ROTATE) {
                     isClick = false;
                     isShowEditBitmap = false;
-                    if (mStatus == STATUS_ZOOM) {
-//                        actionTextZoom(event);
-                        actionBitmapZoom();
-                    } else if (mStatus == STATUS_DRAG) {
-                        actionDrag();
-                    } else {
-                        actionRotate();
-                    }
-                    mPreMovePointF.set(mCurMovePointF);
+                    //View属性后端中View本身被旋转、缩放，历史采样点在变换后的局部坐标系中，只使用换算成原始坐标的当前点
+                    mMoveCoalescer.addEvent(event, dragIndex, mCurMovePointF.x - event.getX(dragIndex),
+                            mCurMovePointF.y - event.getY(dragIndex), mCenterPoint.x, mCenterPoint.y, !isPropertyGesture);
                 }
                 break;
+            case MotionEvent.ACTION_CANCEL:
+                mMoveCoalescer.cancel();
+                endAlign();
+                isShowEditBitmap = true;
+                commitPropertyGesture();
+                endGestureSnapshot();
+                isClick = true;
+                mStatus = STATUS_INIT;
+                commitHistory();
+                break;
         }
         return true;
     }
@@ -578,38 +1078,263 @@ public class SignatureTextView extends View {
         }
     }
 
-    private void actionRotate() {
-        double a = distance4PointF(mCenterPoint, mPreMovePointF);
-        double b = distance4PointF(mPreMovePointF, mCurMovePointF);
-        double c = distance4PointF(mCenterPoint, mCurMovePointF);
-        double cosb = (a * a + c * c - b * b) / (2 * a * c);
-        if (cosb >= 1) {
-            cosb = 1f;
+    /**
+     * 合并后的一次移动
+     */
+    private void applyMove(float preX, float preY, float curX, float curY, float degreeDelta) {
+        mPreMovePointF.set(preX, preY);
+        mCurMovePointF.set(curX, curY);
+        if (mStatus == STATUS_ZOOM) {
+            actionBitmapZoom();
+        } else if (mStatus == STATUS_DRAG) {
+            actionDrag();
+        } else if (mStatus == STATUS_ROTATE) {
+            actionRotate(degreeDelta);
+        }
+        mPreMovePointF.set(mCurMovePointF);
+    }
+
+    /**
+     * 第二根手指按下，点在内容或者控制点上时开始双指手势
+     */
+    private boolean beginPinch() {
+        if (mStatus != STATUS_OUT && mStatus != STATUS_DRAG && mStatus != STATUS_ZOOM && mStatus != STATUS_ROTATE) {
+            return false;
+        }
+        //先处理单指还没有到下一帧的移动
+        mMoveCoalescer.flush();
+        endAlign();
+        //View属性变换后多根手指的坐标无法统一换算，双指手势直接修改布局
+        commitPropertyGesture();
+        mStatus = STATUS_PINCH;
+        isClick = false;
+        isShowEditBitmap = false;
+        if (!isSnapshotActive) {
+            startGestureSnapshot();
+        }
+        mPinchStartScale = textSize / 34f;
+        mPinchScale = 1f;
+        beginSnap();
+        return true;
+    }
+
+    /**
+     * 两指中点的移动作为平移，缩放和旋转都以内容中心为基准，和控制点一致
+     */
+    private void applyPinch(float dx, float dy, float scaleFactor, float degreeDelta) {
+        mCenterPoint.x += dx;
+        mCenterPoint.y += dy;
+        mRawDegree = mRawDegree + degreeDelta;
+        mDegree = snapDegree(mRawDegree);
+        mPinchScale *= scaleFactor;
+        float scale = snapScale(mPinchStartScale * mPinchScale);
+        if (scale <= MIN_SCALE) {
+            scale = MIN_SCALE;
+        } else if (scale >= MAX_SCALE) {
+            scale = MAX_SCALE;
+        }
+        textSize = (int) (34 * scale);
+        transformDraw();
+    }
+
+    /**
+     * 双指手势结束，剩下的手指继续拖动
+     */
+    private void endPinch(MotionEvent event) {
+        //按id找剩下的手指，有第三根手指时它不一定在索引0或1
+        int index = event.findPointerIndex(mPinchDetector.getActivePointerId());
+        if (index < 0 || index == event.getActionIndex()) {
+            index = event.getActionIndex() == 0 ? 1 : 0;
+        }
+        mDragPointerId = event.getPointerId(index);
+        mStatus = STATUS_DRAG;
+        mPreMovePointF.set(event.getX(index) + mViewPaddingLeft, event.getY(index) + mViewPaddingTop);
+        mMoveCoalescer.begin(mPreMovePointF.x, mPreMovePointF.y);
+        mFlingHelper.clearMovement();
+    }
+
+    /**
+     * 手势开始时以当前角度为原始值，解除上一次手势的锁定
+     */
+    private void beginSnap() {
+        mRawDegree = mDegree;
+        mDegreeSnapper.reset();
+        mScaleSnapper.reset();
+        if (isSnapToFitWidth) {
+            //当前内容宽度按字号等比例换算到和父布局宽度一致时的缩放
+            mScaleSnapper.setExtraPoint(mContentWidth > 0 ? textSize / 34f * getParentWidth() / mContentWidth : Float.NaN);
+        } else {
+            mScaleSnapper.setExtraPoint(Float.NaN);
+        }
+    }
+
+    private float snapDegree(float rawDegree) {
+        return isSnapEnabled ? mDegreeSnapper.snap(rawDegree) : rawDegree;
+    }
+
+    private float snapScale(float rawScale) {
+        return isSnapEnabled ? mScaleSnapper.snap(rawScale) : rawScale;
+    }
+
+    private int getParentWidth() {
+        ViewGroup parent = (ViewGroup) getParent();
+        return parent == null ? 0 : parent.getWidth();
+    }
+
+    /**
+     * 拖动开始时收集一次父布局和兄弟View内容的边缘，排序后拖动中只做二分查找
+     */
+    private void beginAlign() {
+        ViewGroup parent = (ViewGroup) getParent();
+        if (parent == null) {
+            return;
+        }
+        isAligning = true;
+        mRawCenterX = mCenterPoint.x;
+        mRawCenterY = mCenterPoint.y;
+        mAlignmentGuide.clear();
+        mAlignmentGuide.addBounds(0, 0, parent.getWidth(), parent.getHeight());
+        for (int i = 0; i < parent.getChildCount(); i++) {
+            View child = parent.getChildAt(i);
+            if (child == this || child.getVisibility() != VISIBLE) {
+                continue;
+            }
+            //贴纸只对齐内容本身，其他View对齐整个范围
+            int[] margin = null;
+            if (child instanceof SignatureView) {
+                margin = ((SignatureView) child).getBorderMargin();
+            } else if (child instanceof SignatureTextView) {
+                margin = ((SignatureTextView) child).getBorderMargin();
+            }
+            if (margin != null) {
+                mAlignmentGuide.addBounds(child.getLeft() + margin[0], child.getTop() + margin[2],
+                        child.getRight() - margin[1], child.getBottom() - margin[3]);
+            } else {
+                mAlignmentGuide.addBounds(child.getLeft(), child.getTop(), child.getRight(), child.getBottom());
+            }
+        }
+        mAlignmentGuide.build();
+        if (mGuideDrawable == null) {
+            Paint guidePaint = new Paint(Paint.ANTI_ALIAS_FLAG);
+            guidePaint.setColor(AlignmentGuide.DEFAULT_GUIDE_COLOR);
+            guidePaint.setStrokeWidth(frameWidth);
+            mGuideDrawable = new AlignmentGuide.GuideDrawable(mAlignmentGuide, guidePaint);
+        }
+        mGuideDrawable.setBounds(0, 0, parent.getWidth(), parent.getHeight());
+        parent.getOverlay().add(mGuideDrawable);
+    }
+
+    /**
+     * 按原始中心点求出内容在父布局中的范围，有候选边在吸附距离内时修正中心点
+     */
+    private void alignCenter() {
+        mCenterPoint.set(mRawCenterX, mRawCenterY);
+        mTransformCore.getBounds(mAlignBounds);
+        mAlignBounds.offset(mCenterPoint.x - mViewWidth / 2, mCenterPoint.y - mViewHeight / 2);
+        if (mAlignmentGuide.snap(mAlignBounds, DisplayUtils.dip2px(getContext(), AlignmentGuide.DEFAULT_THRESHOLD))) {
+            mCenterPoint.x += mAlignmentGuide.getSnapDx();
+            mCenterPoint.y += mAlignmentGuide.getSnapDy();
+        }
+        mGuideDrawable.invalidateSelf();
+    }
+
+    private void endAlign() {
+        if (!isAligning) {
+            return;
+        }
+        isAligning = false;
+        mAlignmentGuide.clear();
+        ViewGroup parent = (ViewGroup) getParent();
+        if (parent != null) {
+            parent.getOverlay().remove(mGuideDrawable);
         }
-        double radian = Math.acos(cosb);
-        float newDegree = (float) radianToDegree(radian);
+    }
 
-        //center -> proMove的向量， 我们使用PointF来实现
-        PointF centerToProMove = new PointF((mPreMovePointF.x - mCenterPoint.x), (mPreMovePointF.y - mCenterPoint.y));
+    /**
+     * 手势开始时记下当前状态
+     */
+    private void beginHistory() {
+        mHistoryX = mCenterPoint.x;
+        mHistoryY = mCenterPoint.y;
+        mHistoryDegree = mDegree;
+        mHistoryScale = textSize;
+        isHistoryPending = true;
+    }
 
-        //center -> curMove 的向量
-        PointF centerToCurMove = new PointF((mCurMovePointF.x - mCenterPoint.x), (mCurMovePointF.y - mCenterPoint.y));
+    /**
+     * 手势结束（包括惯性滑动结束），状态有变化时记录一次
+     */
+    private void commitHistory() {
+        if (!isHistoryPending) {
+            return;
+        }
+        isHistoryPending = false;
+        if (mHistoryX != mCenterPoint.x || mHistoryY != mCenterPoint.y || mHistoryDegree != mDegree || mHistoryScale != textSize) {
+            mHistory.recordTransform(this, mHistoryX, mHistoryY, mHistoryDegree, mHistoryScale,
+                    mCenterPoint.x, mCenterPoint.y, mDegree, textSize);
+        }
+    }
 
-        //向量叉乘结果, 如果结果为负数， 表示为逆时针， 结果为正数表示顺时针
-        float result = centerToProMove.x * centerToCurMove.y - centerToProMove.y * centerToCurMove.x;
+    private void applyHistoryTransform(float centerX, float centerY, float degree, float scale) {
+        mCenterPoint.set(centerX, centerY);
+        mDegree = degree;
+        textSize = Math.round(scale);
+        transformDraw();
+        commitLayoutParams();
+    }
 
-        if (result < 0) {
-            newDegree = -newDegree;
+    private boolean startFling(MotionEvent event) {
+        ViewGroup parent = (ViewGroup) getParent();
+        if (parent == null) {
+            return false;
         }
+        //中心点不会滑出父布局
+        return mFlingHelper.fling(event.getPointerId(event.getActionIndex()), (int) mCenterPoint.x, (int) mCenterPoint.y,
+                0, parent.getWidth(), 0, parent.getHeight());
+    }
+
+    /**
+     * 把当前位置写回布局参数，父布局重新布局时位置不变
+     */
+    private void commitLayoutParams() {
+        RelativeLayout.LayoutParams lp = (RelativeLayout.LayoutParams) this.getLayoutParams();
+        lp.setMargins(mViewPaddingLeft, mViewPaddingTop, 0, 0);
+        lp.removeRule(RelativeLayout.CENTER_IN_PARENT);
+        setLayoutParams(lp);
+        isPositionCommitted = true;
+    }
 
-        mDegree = mDegree + newDegree;
+    /**
+     * @param degreeDelta 所有采样点累积的旋转角度，顺时针为正，逆时针为负
+     */
+    private void actionRotate(float degreeDelta) {
+        mRawDegree = mRawDegree + degreeDelta;
+        mDegree = snapDegree(mRawDegree);
+        if (isPropertyGesture) {
+            applyPropertyTransform();
+            return;
+        }
         transformDraw();
     }
 
     private void actionDrag() {
-        // 修改中心点
-        mCenterPoint.x += mCurMovePointF.x - mPreMovePointF.x;
-        mCenterPoint.y += mCurMovePointF.y - mPreMovePointF.y;
+        if (isAlignEnabled && !isAligning) {
+            beginAlign();
+        }
+        if (isAligning) {
+            //原始中心点跟随手指，显示的中心点是吸附后的位置
+            mRawCenterX += mCurMovePointF.x - mPreMovePointF.x;
+            mRawCenterY += mCurMovePointF.y - mPreMovePointF.y;
+            alignCenter();
+        } else {
+            // 修改中心点
+            mCenterPoint.x += mCurMovePointF.x - mPreMovePointF.x;
+            mCenterPoint.y += mCurMovePointF.y - mPreMovePointF.y;
+        }
+        if (isPropertyGesture) {
+            applyPropertyTransform();
+            return;
+        }
         adjustLayout();
     }
 
@@ -627,10 +1352,10 @@ public class SignatureTextView extends View {
         float bitmapToCenterDistance = (float) Math.sqrt(halfBitmapWidth * halfBitmapWidth + halfBitmapHeight * halfBitmapHeight);
 
         //移动的点到图片中心的距离
-        float moveToCenterDistance = distance4PointF(mCenterPoint, mCurMovePointF);
+        float moveToCenterDistance = TransformCore.distance(mCenterPoint.x, mCenterPoint.y, mCurMovePointF.x, mCurMovePointF.y);
 
         //计算缩放比例
-        scale = moveToCenterDistance / bitmapToCenterDistance;
+        scale = snapScale(moveToCenterDistance / bitmapToCenterDistance);
 
 
         //缩放比例的界限判断
@@ -641,67 +1366,10 @@ public class SignatureTextView extends View {
         }
         textSize = (int) (34 * scale);
 //        mWidthScale = scale;
-        transformDraw();
-    }
-
-    private void actionTextZoom(MotionEvent event) {
-        PointF movePoint = new PointF(event.getX(), event.getY());
-
-        int halfBitmapWidth = mInitContentWidth / 2;
-        int halfBitmapHeight = mInitContentHeight / 2;
-        float widthScale = 0;
-        float heightScale = 0;
-        float ae = distance4PointF(movePoint, mCenterPoint);
-        float ce = distance4Point(movePoint, mRBPoint);
-        float ac = distance4Point(mRBPoint, mCenterPoint);
-
-        float cosa = (float) ((Math.pow(ae, 2) + Math.pow(ac, 2) - Math.pow(ce, 2)) / (2 * ae * ac));
-        float angleA = (float) Math.toDegrees(Math.acos(cosa));
-        float cosB = halfBitmapHeight / ac;
-        float angleB = (float) Math.toDegrees(Math.acos(cosB));
-        float angleP = angleB - angleA;
-        float newHeight = (float) (ae * Math.cos(Math.toRadians(angleP)));
-        float newWidth = (float) (ae * Math.sin(Math.toRadians(angleP)));
-
-        widthScale = newWidth / halfBitmapWidth;
-        heightScale = newHeight / halfBitmapHeight;
-
-        Log.d("TEST", "widthScale:" + widthScale + ",heightScale:" + heightScale);
-//        float scale = 1f;
-//        int halfBitmapWidth = mInitContentWidth / 2;
-//        int halfBitmapHeight = mInitContentHeight / 2;
-//        //图片某个点到图片中心的距离
-//        float bitmapToCenterDistance = (float) Math.sqrt(halfBitmapWidth * halfBitmapWidth + halfBitmapHeight * halfBitmapHeight);
-//
-//        //移动的点到图片中心的距离
-//        float moveToCenterDistance = distance4PointF(mCenterPoint, mCurMovePointF);
-//
-//        //计算缩放比例
-//        scale = moveToCenterDistance / bitmapToCenterDistance;
-////        //图片某个点到图片中心的距离
-//        float pointToCenterDistance = (float) Math.sqrt(halfBitmapWidth * halfBitmapWidth + halfBitmapHeight * halfBitmapHeight);
-//        float cosa = halfBitmapWidth / pointToCenterDistance;
-//        float sina = halfBitmapHeight / pointToCenterDistance;
-//
-//        float widthScale = (moveToCenterDistance * cosa) / halfBitmapWidth;
-//
-//        float heightScale = (moveToCenterDistance * sina) / halfBitmapHeight;
-
-        //缩放比例的界限判断
-        if (widthScale <= MIN_SCALE) {
-            widthScale = MIN_SCALE;
-        } else if (widthScale >= MAX_SCALE) {
-            widthScale = MAX_SCALE;
-        }
-        if (heightScale <= MIN_SCALE) {
-            heightScale = MIN_SCALE;
-        } else if (heightScale >= MAX_SCALE) {
-            heightScale = MAX_SCALE;
-        }
-//        textSize = (int) (34 * scale);
-        Log.d("TEST", "mCurMovePointF：" + mCurMovePointF.toString() + "，mPreMovePointF：" + mPreMovePointF.toString());
-        mWidthScale = widthScale;
-        textSize = (int) (34 * heightScale);
+        if (isPropertyGesture) {
+            applyPropertyTransform();
+            return;
+        }
         transformDraw();
     }
 
@@ -727,29 +1395,17 @@ public class SignatureTextView extends View {
      * @param degree
      */
     private void computeRect(int left, int top, int right, int bottom, float degree) {
-        Point lt = new Point(left, top);
-        Point rt = new Point(right, top);
-        Point rb = new Point(right, bottom);
-        Point lb = new Point(left, bottom);
-        cp = new Point((right - left + 1) / 2 + left, (bottom - top + 1) / 2 + top);
-        obtainRoationPoint(mLTPoint, cp, lt, degree);
-        obtainRoationPoint(mRTPoint, cp, rt, degree);
-        obtainRoationPoint(mRBPoint, cp, rb, degree);
-        obtainRoationPoint(mLBPoint, cp, lb, degree);
-
-        mLTPoint.x += halfDrawableWidth;
-        mRTPoint.x += halfDrawableWidth;
-        mRBPoint.x += halfDrawableWidth;
-        mLBPoint.x += halfDrawableWidth;
-
-        //将Bitmap的四个点的Y坐标移动offsetY + halfDrawableHeight
-        mLTPoint.y += halfDrawableHeight;
-        mRTPoint.y += halfDrawableHeight;
-        mRBPoint.y += halfDrawableHeight;
-        mLBPoint.y += halfDrawableHeight;
+        cp.set((right - left + 1) / 2 + left, (bottom - top + 1) / 2 + top);
+        //文字的缩放体现在字号上，这里不再额外缩放
+        mTransformCore.setSize(right - left, bottom - top);
+        mTransformCore.setScale(1f);
+        //内容绘制时偏移了半个控制图标，四个点同样偏移
+        mTransformCore.setCenter(left + (right - left) / 2f + halfDrawableWidth, top + (bottom - top) / 2f + halfDrawableHeight);
+        mTransformCore.setDegree(degree);
+        mTransformCore.update();
+        mTransformCore.getCorners(mLTPoint, mRTPoint, mRBPoint, mLBPoint);
     }
 
-
     /**
      * 根据位置判断控制图标处于那个点
      *
@@ -776,59 +1432,44 @@ public class SignatureTextView extends View {
      * @param array
      * @return
      */
-    public int getMaxValue(Integer... array) {
-        List<Integer> list = Arrays.asList(array);
-        Collections.sort(list);
-        return list.get(list.size() - 1);
+    public int getMaxValue(int... array) {
+        int max = array[0];
+        for (int i = 1; i < array.length; i++) {
+            max = Math.max(max, array[i]);
+        }
+        return max;
     }
 
-
     /**
-     * 获取变长参数最大的值
-     *
-     * @param array
-     * @return
+     * 获取四个值中最大的值，不做装箱和数组分配
      */
-    public int getMinValue(Integer... array) {
-        List<Integer> list = Arrays.asList(array);
-        Collections.sort(list);
-        return list.get(0);
+    public int getMaxValue(int a, int b, int c, int d) {
+        return Math.max(Math.max(a, b), Math.max(c, d));
     }
 
 
     /**
-     * 获取旋转某个角度之后的点
+     * 获取变长参数最小的值
      *
-     * @param source
-     * @param degree
+     * @param array
      * @return
      */
-    public void obtainRoationPoint(Point targetPoint, Point center, Point source, float degree) {
-        targetPoint.x = (int) (((source.x - center.x) * Math.cos(degreeToRadian(degree))) - ((source.y - center.y) * Math.sin(degreeToRadian(degree))) + center.x);
-        targetPoint.y = (int) (((source.x - center.x) * Math.sin(degreeToRadian(degree))) + ((source.y - center.y) * Math.cos(degreeToRadian(degree))) + center.y);
+    public int getMinValue(int... array) {
+        int min = array[0];
+        for (int i = 1; i < array.length; i++) {
+            min = Math.min(min, array[i]);
+        }
+        return min;
     }
 
-
     /**
-     * 弧度换算成角度
-     *
-     * @return
+     * 获取四个值中最小的值，不做装箱和数组分配
      */
-    public static double radianToDegree(double radian) {
-        return radian * 180 / Math.PI;
+    public int getMinValue(int a, int b, int c, int d) {
+        return Math.min(Math.min(a, b), Math.min(c, d));
     }
 
 
-    /**
-     * 角度换算成弧度
-     *
-     * @param degree
-     * @return
-     */
-    public static double degreeToRadian(double degree) {
-        return degree * Math.PI / 180;
-    }
-
     /**
      * 根据点击的位置判断是否点中控制旋转，缩放的图片， 初略的计算
      *
@@ -837,13 +1478,9 @@ public class SignatureTextView extends View {
      * @return
      */
     private int JudgeStatus(float x, float y) {
-        PointF touchPoint = new PointF(x, y);
-        PointF controlPointF = new PointF(mControlPoint);
-        PointF deletePointF = new PointF(mDeletePoint);
-
         //点击的点到控制旋转，缩放点的距离
-        float distanceToControl = distance4PointF(touchPoint, controlPointF);
-        float distanceToDelete = distance4PointF(touchPoint, deletePointF);
+        float distanceToControl = TransformCore.distance(x, y, mControlPoint.x, mControlPoint.y);
+        float distanceToDelete = TransformCore.distance(x, y, mDeletePoint.x, mDeletePoint.y);
 
         //如果两者之间的距离小于 控制图标的宽度，高度的最小值，则认为点中了控制图标
         if (distanceToControl < Math.min(mDrawableWidth / 2, mDrawableHeight / 2)) {
@@ -867,61 +1504,150 @@ public class SignatureTextView extends View {
      */
     public void setEditable(boolean isEditable) {
         this.isEditable = isEditable;
-        invalidate();
+        invalidateDirty();
+    }
+
+
+    public interface IClickListener {
+        void onClickDelete();
+
+        void onClickEdit();
+
+        void onClickTimestamp();
+
+        void onClickView();
+    }
+
+    public void setTabClickListener(IClickListener listener) {
+        this.mClickListener = listener;
     }
 
+    /**
+     * 只刷新上一次和这一次内容、边框、控制图标和编辑按钮范围的并集
+     */
+    private void invalidateDirty() {
+        mDirtyRegion.reset();
+        mDirtyRegion.unionQuad(mTransformCore.getCorners());
+        if (isEditable) {
+            mDirtyRegion.unionCenter(mControlPoint.x, mControlPoint.y, mDrawableWidth, mDrawableHeight);
+            if (rotateDrawable != null) {
+                mDirtyRegion.unionCenter(mDeletePoint.x, mDeletePoint.y, mDeleteDrawableWidth, mDeleteDrawableHeight);
+            }
+            if (isShowEditBitmap && !tabBitmapList.isEmpty()) {
+                int left = (mViewWidth - getAllEditBitmapWidth()) / 2;
+                int top = getMinValue(mLTPoint.y, mRTPoint.y, mLBPoint.y, mRBPoint.y) - getEditBitMapOffsetHeight() - framePadding - halfDrawableHeight;
+                mDirtyRegion.union(left, top, left + getAllEditBitmapWidth(), top + editBitmapHeight);
+            }
+        }
+        mDirtyRegion.invalidate(this);
+    }
 
     /**
-     * 两个点之间的距离
+     * 调试用，报告每次局部刷新的范围和节省的面积
      *
-     * @param pf1
-     * @param pf2
-     * @return
+     * @param listener
      */
-    private float distance4PointF(PointF pf1, PointF pf2) {
-        float disX = pf2.x - pf1.x;
-        float disY = pf2.y - pf1.y;
-        return (float) Math.sqrt(disX * disX + disY * disY);
+    public void setDirtyRegionListener(DirtyRegion.IDebugListener listener) {
+        mDirtyRegion.setDebugListener(listener);
     }
 
     /**
-     * 两个点之间的距离
+     * 设置是否把一帧内的MOVE事件合并到下一帧处理，默认开启
      *
-     * @param pf1
-     * @param pf2
-     * @return
+     * @param enabled
      */
-    private float distance4Point(PointF pf1, Point pf2) {
-        float disX = pf2.x - pf1.x;
-        float disY = pf2.y - pf1.y;
-        return (float) Math.sqrt(disX * disX + disY * disY);
+    public void setMoveCoalescingEnabled(boolean enabled) {
+        mMoveCoalescer.setEnabled(enabled);
     }
 
     /**
-     * 两个点之间的距离
+     * 设置拖动松手后是否惯性滑动，默认开启
      *
-     * @param pf1
-     * @param pf2
-     * @return
+     * @param enabled
      */
-    private float distance4Point(Point pf1, PointF pf2) {
-        float disX = pf2.x - pf1.x;
-        float disY = pf2.y - pf1.y;
-        return (float) Math.sqrt(disX * disX + disY * disY);
+    public void setFlingEnabled(boolean enabled) {
+        mFlingHelper.setEnabled(enabled);
     }
 
-    public interface IClickListener {
-        void onClickDelete();
+    /**
+     * 设置旋转和缩放时是否吸附，默认开启
+     *
+     * @param enabled
+     */
+    public void setSnapEnabled(boolean enabled) {
+        this.isSnapEnabled = enabled;
+    }
 
-        void onClickEdit();
+    /**
+     * 设置角度吸附点，默认0、45、90度等45度的倍数，不传时不吸附角度
+     *
+     * @param degrees [0, 360)内的角度
+     */
+    public void setDegreeSnapPoints(float... degrees) {
+        mDegreeSnapper.setPoints(degrees);
+    }
 
-        void onClickTimestamp();
+    /**
+     * 设置缩放吸附点，默认1倍和2倍，不传时不吸附缩放
+     *
+     * @param scales
+     */
+    public void setScaleSnapPoints(float... scales) {
+        mScaleSnapper.setPoints(scales);
+    }
 
-        void onClickView();
+    /**
+     * 设置是否额外吸附到内容宽度和父布局宽度一致的缩放
+     *
+     * @param enabled
+     */
+    public void setSnapToFitWidth(boolean enabled) {
+        this.isSnapToFitWidth = enabled;
     }
 
-    public void setTabClickListener(IClickListener listener) {
-        this.mClickListener = listener;
+    /**
+     * 设置拖动时是否对齐父布局和其他贴纸的边缘、中心，默认开启
+     *
+     * @param enabled
+     */
+    public void setAlignEnabled(boolean enabled) {
+        if (!enabled) {
+            endAlign();
+        }
+        this.isAlignEnabled = enabled;
+    }
+
+    /**
+     * 撤销上一次拖动、旋转、缩放或文字修改
+     *
+     * @return 没有可以撤销的操作时返回false
+     */
+    public boolean undo() {
+        //先结束惯性滑动，滑动的结果作为一条记录
+        mFlingHelper.stop();
+        return mHistory.undo();
+    }
+
+    /**
+     * 重做上一次撤销的操作
+     *
+     * @return 没有可以重做的操作时返回false
+     */
+    public boolean redo() {
+        mFlingHelper.stop();
+        return mHistory.redo();
+    }
+
+    public boolean canUndo() {
+        return mHistory.canUndo();
+    }
+
+    public boolean canRedo() {
+        return mHistory.canRedo();
+    }
+
+    public void clearHistory() {
+        mHistory.clear();
     }
 
     private int getMaxY() {
@@ -949,28 +1675,4 @@ public class SignatureTextView extends View {
         return array;
     }
 
-    public static boolean isPolygonContainsPoint(Point point, Point... mPoints) {
-        int nCross = 0;
-        for (int i = 0; i < mPoints.length; i++) {
-            Point p1 = mPoints[i];
-            Point p2 = mPoints[(i + 1) % mPoints.length];
-            // 取多边形任意一个边,做点point的水平延长线,求解与当前边的交点个数
-            // p1p2是水平线段,要么没有交点,要么有无限个交点
-            if (p1.y == p2.y)
-                continue;
-            // point 在p1p2 底部 --> 无交点
-            if (point.y < Math.min(p1.y, p2.y))
-                continue;
-            // point 在p1p2 顶部 --> 无交点
-            if (point.y >= Math.max(p1.y, p2.y))
-                continue;
-            // 求解 point点水平线与当前p1p2边的交点的 X 坐标
-            double x = (point.y - p1.y) * (p2.x - p1.x) / (p2.y - p1.y) + p1.x;
-            if (x > point.x) // 当x=point.x时,说明point在p1p2线段上
-                nCross++; // 只统计单边交点
-        }
-        // 单边交点为偶数，点在多边形之外 ---
-        return (nCross % 2 == 1);
-    }
-
 }
@@ -0,0 +1,102 @@
+package com.ccsf.snappingview;
+
+import android.graphics.Typeface;
+import android.text.Layout;
+import android.text.StaticLayout;
+import android.text.TextPaint;
+import android.text.TextUtils;
+
+/**
+ * StaticLayout的缓存，只有当内容、宽度、字体大小、对齐方式或者影响排版的画笔状态发生变化时才重新排版
+ * <p>
+ * 用传入画笔排版的结果绘制时使用画笔的实时状态，字体颜色不参与比较；通过put放入的结果如果是用画笔的副本排版的
+ * （例如TextLayoutLoader），绘制时用的是副本的颜色，颜色和画笔不一致时重新排版
+ */
+public class StaticLayoutCache {
+
+    private StaticLayout mLayout;
+
+    /**
+     * 上一次排版时的输入
+     */
+    private CharSequence mContent;
+    private TextPaint mPaint;
+    private int mWidth;
+    private Layout.Alignment mAlign;
+    private float mTextSize;
+    private Typeface mTypeface;
+    private int mFlags;
+    private float mTextScaleX;
+    private float mTextSkewX;
+
+    /**
+     * 获取排版结果，输入没有变化时直接返回缓存
+     *
+     * @param content 文本内容
+     * @param paint   画笔
+     * @param width   排版宽度
+     * @param align   对齐方式
+     * @return
+     */
+    public StaticLayout obtain(CharSequence content, TextPaint paint, int width, Layout.Alignment align) {
+        if (mLayout == null || !isSameInput(content, paint, width, align)) {
+            put(new StaticLayout(content, paint, width, align, 1.0f, 0.0f, false), content, paint, width, align);
+        }
+        return mLayout;
+    }
+
+    /**
+     * 放入在其他地方（例如后台线程）排好的结果，按paint当前的状态记录输入，之后相同输入的obtain直接返回它；
+     * layout使用的画笔不是paint时，paint的颜色改变后obtain会用paint重新排版
+     *
+     * @param layout  排版结果
+     * @param content 文本内容
+     * @param paint   之后调用obtain时会传入的画笔
+     * @param width   排版宽度
+     * @param align   对齐方式
+     */
+    public void put(StaticLayout layout, CharSequence content, TextPaint paint, int width, Layout.Alignment align) {
+        mLayout = layout;
+        mContent = content;
+        mPaint = paint;
+        mWidth = width;
+        mAlign = align;
+        mTextSize = paint.getTextSize();
+        mTypeface = paint.getTypeface();
+        mFlags = paint.getFlags();
+        mTextScaleX = paint.getTextScaleX();
+        mTextSkewX = paint.getTextSkewX();
+    }
+
+    /**
+     * 返回当前缓存的排版结果，可能为null
+     */
+    public StaticLayout peek() {
+        return mLayout;
+    }
+
+    /**
+     * 清空缓存，下一次obtain时强制重新排版
+     */
+    public void clear() {
+        mLayout = null;
+        mContent = null;
+        mPaint = null;
+        mTypeface = null;
+    }
+
+    private boolean isSameInput(CharSequence content, TextPaint paint, int width, Layout.Alignment align) {
+        //layout用的是画笔副本时绘制颜色不会跟随画笔
+        TextPaint layoutPaint = mLayout.getPaint();
+        return mPaint == paint
+                && (layoutPaint == paint || layoutPaint.getColor() == paint.getColor())
+                && mWidth == width
+                && mAlign == align
+                && mTextSize == paint.getTextSize()
+                && mTypeface == paint.getTypeface()
+                && mFlags == paint.getFlags()
+                && mTextScaleX == paint.getTextScaleX()
+                && mTextSkewX == paint.getTextSkewX()
+                && (mContent == content || TextUtils.equals(mContent, content));
+    }
+}
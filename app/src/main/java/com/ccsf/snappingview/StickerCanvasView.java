@@ -0,0 +1,897 @@
+package com.ccsf.snappingview;
+
+import android.content.Context;
+import android.content.res.Resources;
+import android.graphics.Canvas;
+import android.graphics.Paint;
+import android.graphics.Path;
+import android.graphics.PointF;
+import android.graphics.RectF;
+import android.graphics.drawable.Drawable;
+import android.util.AttributeSet;
+import android.view.MotionEvent;
+import android.view.View;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * 在同一个View中绘制多个贴纸元素
+ * <p>
+ * 每个元素只是一个保存内容和TransformCore的模型，onDraw中按各自的矩阵依次绘制，触摸事件在内部分发给选中的元素，
+ * 不再需要一个贴纸对应一个View
+ */
+public class StickerCanvasView extends View {
+
+    public static final int STATUS_INIT = 0;
+    public static final int STATUS_DRAG = 1;
+    public static final int STATUS_ZOOM = 2;
+    public static final int STATUS_ROTATE = 3;
+    public static final int STATUS_OUT = 7;
+    public static final int STATUS_PINCH = 8;
+
+    /**
+     * 移动超过这个距离才算拖动
+     */
+    private static final int TOUCH_SLOP = 10;
+
+    /**
+     * 元素列表，越靠后越在上层
+     */
+    private final List<StickerElement> mElements = new ArrayList<>();
+    private final List<StickerElement> mReadOnlyElements = Collections.unmodifiableList(mElements);
+
+    /**
+     * 按旋转后外接矩形建立的网格索引，用于点击查找
+     */
+    private final StickerGridIndex mGridIndex = new StickerGridIndex();
+    private int mNextZIndex = 0;
+
+    private StickerElement mSelected;
+    private int mStatus = STATUS_INIT;
+    private boolean isClick = true;
+
+    private final PointF mPreMovePointF = new PointF();
+    private final PointF mCurMovePointF = new PointF();
+    /**
+     * 拖动的手指，双指手势结束后是剩下的那根手指
+     */
+    private int mDragPointerId = MotionEvent.INVALID_POINTER_ID;
+
+    private Paint mFramePaint;
+    private final Path mPath = new Path();
+    private int frameColor = 0xffC53837;
+    private int frameWidth = SignatureView.DEFAULT_FRAME_WIDTH;
+
+    /**
+     * 缩放、旋转图标，所有画布共用同一份
+     */
+    private Drawable zoomDrawable, rotateDrawable;
+    private int mDrawableWidth, mDrawableHeight;
+    private boolean isIconsAcquired;
+
+    private IClickListener mClickListener;
+
+    /**
+     * 拖动、旋转、缩放时只刷新选中元素上一次和这一次范围的并集
+     */
+    private final DirtyRegion mDirtyRegion = new DirtyRegion();
+
+    /**
+     * 一帧内的MOVE事件合并到下一帧统一处理
+     */
+    private final MoveCoalescer mMoveCoalescer = new MoveCoalescer(new MoveCoalescer.Callback() {
+        @Override
+        public void onCoalescedMove(float preX, float preY, float curX, float curY, float degreeDelta) {
+            applyMove(preX, preY, curX, curY, degreeDelta);
+        }
+    });
+
+    /**
+     * 双指平移、缩放和旋转选中的元素
+     */
+    private final PinchRotateDetector mPinchDetector = new PinchRotateDetector(new PinchRotateDetector.Listener() {
+        @Override
+        public boolean onPinchBegin() {
+            return beginPinch();
+        }
+
+        @Override
+        public void onPinch(float dx, float dy, float scaleFactor, float degreeDelta) {
+            applyPinch(dx, dy, scaleFactor, degreeDelta);
+        }
+
+        @Override
+        public void onPinchEnd() {
+        }
+    });
+
+    /**
+     * 拖动松手后选中元素的惯性滑动
+     */
+    private final FlingHelper mFlingHelper = new FlingHelper(this, new FlingHelper.Callback() {
+        @Override
+        public void onFlingMove(int dx, int dy) {
+            if (mSelected == null) {
+                return;
+            }
+            TransformCore transform = mSelected.getTransform();
+            transform.setCenter(transform.getCenterX() + dx, transform.getCenterY() + dy);
+            transform.update();
+            mGridIndex.update(mSelected);
+            invalidateSelected();
+        }
+
+        @Override
+        public void onFlingEnd() {
+            commitHistory();
+        }
+    });
+
+    /**
+     * 角度和缩放吸附，手势中累积原始角度，显示吸附后的值
+     */
+    private final ValueSnapper mDegreeSnapper = ValueSnapper.forDegree();
+    private final ValueSnapper mScaleSnapper = ValueSnapper.forScale();
+    private boolean isSnapEnabled = true;
+    private boolean isSnapToFitWidth = false;
+    private float mRawDegree;
+
+    /**
+     * 拖动时吸附到画布和其他元素的边缘、中心
+     */
+    private final AlignmentGuide mAlignmentGuide = new AlignmentGuide();
+    private final RectF mAlignBounds = new RectF();
+    private Paint mGuidePaint;
+    private boolean isAlignEnabled = true;
+    private boolean isAligning = false;
+    private float mRawCenterX, mRawCenterY;
+
+    /**
+     * 撤销、重做，变换只保存手势前后的中心点、角度和缩放，文字只保存前后两个字符串的引用
+     */
+    private final TransformHistory<StickerElement> mHistory = new TransformHistory<>(new TransformHistory.Callback<StickerElement>() {
+        @Override
+        public void onApplyTransform(StickerElement target, float centerX, float centerY, float degree, float scale) {
+            TransformCore transform = target.getTransform();
+            transform.setCenter(centerX, centerY);
+            transform.setDegree(degree);
+            transform.setScale(scale);
+            transform.update();
+            notifyElementChanged(target);
+        }
+
+        @Override
+        public void onApplyContent(StickerElement target, Object content) {
+            if (target instanceof TextStickerElement && content instanceof String) {
+                ((TextStickerElement) target).setText((String) content);
+                notifyElementChanged(target);
+            }
+        }
+
+        @Override
+        public void onAdd(StickerElement target, int index) {
+            //恢复到原来的位置，zIndex没有变化，和列表顺序仍然一致
+            mElements.add(Math.min(index, mElements.size()), target);
+            mGridIndex.update(target);
+            invalidate();
+        }
+
+        @Override
+        public void onRemove(StickerElement target) {
+            removeElementInternal(target);
+        }
+    });
+    private StickerElement mHistoryElement;
+    private float mHistoryX, mHistoryY, mHistoryDegree, mHistoryScale;
+
+    /**
+     * 双指手势开始时的缩放和之后累积的比例
+     */
+    private float mPinchStartScale, mPinchScale;
+
+    public StickerCanvasView(Context context) {
+        this(context, null);
+    }
+
+    public StickerCanvasView(Context context, AttributeSet attrs) {
+        this(context, attrs, 0);
+    }
+
+    public StickerCanvasView(Context context, AttributeSet attrs, int defStyle) {
+        super(context, attrs, defStyle);
+        init();
+    }
+
+    private void init() {
+        mFramePaint = new Paint();
+        mFramePaint.setAntiAlias(true);
+        mFramePaint.setColor(frameColor);
+        mFramePaint.setStrokeWidth(frameWidth);
+        mFramePaint.setStyle(Paint.Style.STROKE);
+        mGuidePaint = new Paint(Paint.ANTI_ALIAS_FLAG);
+        mGuidePaint.setColor(AlignmentGuide.DEFAULT_GUIDE_COLOR);
+        mGuidePaint.setStrokeWidth(frameWidth);
+        acquireIcons();
+        mDrawableWidth = zoomDrawable.getIntrinsicWidth();
+        mDrawableHeight = zoomDrawable.getIntrinsicHeight();
+    }
+
+    private void acquireIcons() {
+        if (isIconsAcquired) {
+            return;
+        }
+        Resources res = getContext().getResources();
+        zoomDrawable = IconPool.acquireDrawable(res, R.mipmap.icon_zoom);
+        rotateDrawable = IconPool.acquireDrawable(res, R.mipmap.icon_rotate);
+        isIconsAcquired = true;
+    }
+
+    private void releaseIcons() {
+        if (!isIconsAcquired) {
+            return;
+        }
+        Resources res = getContext().getResources();
+        IconPool.releaseDrawable(res, R.mipmap.icon_zoom);
+        IconPool.releaseDrawable(res, R.mipmap.icon_rotate);
+        isIconsAcquired = false;
+    }
+
+    @Override
+    protected void onAttachedToWindow() {
+        super.onAttachedToWindow();
+        acquireIcons();
+    }
+
+    @Override
+    protected void onDetachedFromWindow() {
+        super.onDetachedFromWindow();
+        mMoveCoalescer.cancel();
+        mFlingHelper.recycle();
+        releaseIcons();
+    }
+
+    @Override
+    protected void onSizeChanged(int w, int h, int oldw, int oldh) {
+        super.onSizeChanged(w, h, oldw, oldh);
+        for (int i = 0; i < mElements.size(); i++) {
+            StickerElement element = mElements.get(i);
+            if (element.isCenterPending) {
+                element.getTransform().setCenter(w / 2f, h / 2f);
+                element.isCenterPending = false;
+                mGridIndex.update(element);
+            }
+        }
+    }
+
+    /**
+     * 添加元素到最上层，放在画布中心；画布还没有尺寸时等到onSizeChanged再放到中心
+     *
+     * @param element
+     */
+    public void addElement(StickerElement element) {
+        checkElement(element);
+        if (getWidth() > 0 && getHeight() > 0) {
+            addElement(element, getWidth() / 2f, getHeight() / 2f);
+        } else {
+            element.isCenterPending = true;
+            addElementInternal(element);
+        }
+    }
+
+    /**
+     * 添加元素到最上层，中心点为(centerX, centerY)
+     */
+    public void addElement(StickerElement element, float centerX, float centerY) {
+        checkElement(element);
+        element.isCenterPending = false;
+        element.getTransform().setCenter(centerX, centerY);
+        addElementInternal(element);
+    }
+
+    private void checkElement(StickerElement element) {
+        if (element == null) {
+            throw new NullPointerException("element不能为空");
+        }
+    }
+
+    private void addElementInternal(StickerElement element) {
+        element.zIndex = mNextZIndex++;
+        mElements.add(element);
+        mGridIndex.update(element);
+        mHistory.recordAdd(element, mElements.size() - 1);
+        invalidate();
+    }
+
+    public void removeElement(StickerElement element) {
+        int index = removeElementInternal(element);
+        if (index >= 0) {
+            mHistory.recordRemove(element, index);
+        }
+    }
+
+    /**
+     * @return 元素原来的位置，不在画布中时返回-1
+     */
+    private int removeElementInternal(StickerElement element) {
+        int index = mElements.indexOf(element);
+        if (index < 0) {
+            return -1;
+        }
+        mElements.remove(index);
+        mGridIndex.remove(element);
+        if (mSelected == element) {
+            mFlingHelper.stop();
+            mSelected = null;
+            mStatus = STATUS_INIT;
+        }
+        invalidate();
+        return index;
+    }
+
+    /**
+     * 修改文字元素的内容，可以撤销
+     */
+    public void setElementText(TextStickerElement element, String text) {
+        checkElement(element);
+        if (text == null) {
+            throw new NullPointerException("text不能为空");
+        }
+        if (text.equals(element.getText())) {
+            return;
+        }
+        mHistory.recordContent(element, element.getText(), text);
+        element.setText(text);
+        notifyElementChanged(element);
+    }
+
+    /**
+     * 清空所有元素，同时清空撤销记录
+     */
+    public void clearElements() {
+        mHistory.clear();
+        mElements.clear();
+        mGridIndex.clear();
+        mNextZIndex = 0;
+        mSelected = null;
+        mStatus = STATUS_INIT;
+        invalidate();
+    }
+
+    /**
+     * 全部元素，越靠后越在上层，只读
+     */
+    public List<StickerElement> getElements() {
+        return mReadOnlyElements;
+    }
+
+    public StickerElement getSelectedElement() {
+        return mSelected;
+    }
+
+    /**
+     * 选中元素，传null取消选中
+     */
+    public void setSelectedElement(StickerElement element) {
+        if (mSelected != element) {
+            mFlingHelper.stop();
+            endAlign();
+            mSelected = element;
+            mDirtyRegion.discard();
+            invalidate();
+        }
+    }
+
+    /**
+     * 元素的内容或变换被外部修改后调用，更新索引并重新绘制
+     */
+    public void notifyElementChanged(StickerElement element) {
+        mGridIndex.update(element);
+        invalidate();
+    }
+
+    public void setClickListener(IClickListener listener) {
+        this.mClickListener = listener;
+    }
+
+    /**
+     * 调试用，报告每次局部刷新的范围和节省的面积
+     *
+     * @param listener
+     */
+    public void setDirtyRegionListener(DirtyRegion.IDebugListener listener) {
+        mDirtyRegion.setDebugListener(listener);
+    }
+
+    /**
+     * 设置是否把一帧内的MOVE事件合并到下一帧处理，默认开启
+     *
+     * @param enabled
+     */
+    public void setMoveCoalescingEnabled(boolean enabled) {
+        mMoveCoalescer.setEnabled(enabled);
+    }
+
+    /**
+     * 设置拖动松手后是否惯性滑动，默认开启
+     *
+     * @param enabled
+     */
+    public void setFlingEnabled(boolean enabled) {
+        mFlingHelper.setEnabled(enabled);
+    }
+
+    /**
+     * 设置旋转和缩放时是否吸附，默认开启
+     *
+     * @param enabled
+     */
+    public void setSnapEnabled(boolean enabled) {
+        this.isSnapEnabled = enabled;
+    }
+
+    /**
+     * 设置角度吸附点，默认0、45、90度等45度的倍数，不传时不吸附角度
+     *
+     * @param degrees [0, 360)内的角度
+     */
+    public void setDegreeSnapPoints(float... degrees) {
+        mDegreeSnapper.setPoints(degrees);
+    }
+
+    /**
+     * 设置缩放吸附点，默认1倍和2倍，不传时不吸附缩放
+     *
+     * @param scales
+     */
+    public void setScaleSnapPoints(float... scales) {
+        mScaleSnapper.setPoints(scales);
+    }
+
+    /**
+     * 设置是否额外吸附到内容宽度和父布局宽度一致的缩放
+     *
+     * @param enabled
+     */
+    public void setSnapToFitWidth(boolean enabled) {
+        this.isSnapToFitWidth = enabled;
+    }
+
+    /**
+     * 设置拖动时是否对齐画布和其他元素的边缘、中心，默认开启
+     *
+     * @param enabled
+     */
+    public void setAlignEnabled(boolean enabled) {
+        if (!enabled) {
+            endAlign();
+        }
+        this.isAlignEnabled = enabled;
+    }
+
+    /**
+     * 撤销上一次添加、删除、拖动、旋转、缩放或文字修改
+     *
+     * @return 没有可以撤销的操作时返回false
+     */
+    public boolean undo() {
+        //先结束惯性滑动，滑动的结果作为一条记录
+        mFlingHelper.stop();
+        return mHistory.undo();
+    }
+
+    /**
+     * 重做上一次撤销的操作
+     *
+     * @return 没有可以重做的操作时返回false
+     */
+    public boolean redo() {
+        mFlingHelper.stop();
+        return mHistory.redo();
+    }
+
+    public boolean canUndo() {
+        return mHistory.canUndo();
+    }
+
+    public boolean canRedo() {
+        return mHistory.canRedo();
+    }
+
+    public void clearHistory() {
+        mHistory.clear();
+    }
+
+    /**
+     * 刷新选中元素连同边框、图标在内的上一次和这一次范围
+     */
+    private void invalidateSelected() {
+        mDirtyRegion.reset();
+        float[] c = mSelected.getTransform().getCorners();
+        mDirtyRegion.unionQuad(c);
+        mDirtyRegion.unionCenter(Math.round(c[4]), Math.round(c[5]), mDrawableWidth, mDrawableHeight);
+        mDirtyRegion.unionCenter(Math.round(c[2]), Math.round(c[3]), mDrawableWidth, mDrawableHeight);
+        if (isAligning) {
+            //辅助线贯穿整个画布，也要加入刷新范围
+            float guideX = mAlignmentGuide.getGuideX();
+            float guideY = mAlignmentGuide.getGuideY();
+            if (!Float.isNaN(guideX)) {
+                mDirtyRegion.union((int) guideX - frameWidth, 0, (int) guideX + frameWidth + 1, getHeight());
+            }
+            if (!Float.isNaN(guideY)) {
+                mDirtyRegion.union(0, (int) guideY - frameWidth, getWidth(), (int) guideY + frameWidth + 1);
+            }
+        }
+        mDirtyRegion.invalidate(this);
+    }
+
+    @Override
+    protected void onDraw(Canvas canvas) {
+        super.onDraw(canvas);
+        for (int i = 0; i < mElements.size(); i++) {
+            mElements.get(i).draw(canvas);
+        }
+        if (mSelected != null) {
+            drawSelection(canvas, mSelected);
+        }
+        if (isAligning) {
+            mAlignmentGuide.draw(canvas, getWidth(), getHeight(), mGuidePaint);
+        }
+    }
+
+    /**
+     * 画选中元素的边框和缩放、旋转图标
+     */
+    private void drawSelection(Canvas canvas, StickerElement element) {
+        float[] c = element.getTransform().getCorners();
+        mPath.reset();
+        mPath.moveTo(c[0], c[1]);
+        mPath.lineTo(c[2], c[3]);
+        mPath.lineTo(c[4], c[5]);
+        mPath.lineTo(c[6], c[7]);
+        mPath.close();
+        canvas.drawPath(mPath, mFramePaint);
+        //右下角缩放，右上角旋转，和SignatureView的默认位置一致
+        drawIcon(canvas, zoomDrawable, c[4], c[5]);
+        drawIcon(canvas, rotateDrawable, c[2], c[3]);
+    }
+
+    private void drawIcon(Canvas canvas, Drawable drawable, float x, float y) {
+        if (drawable == null) {
+            return;
+        }
+        int cx = Math.round(x);
+        int cy = Math.round(y);
+        drawable.setBounds(cx - mDrawableWidth / 2, cy - mDrawableHeight / 2,
+                cx + mDrawableWidth / 2, cy + mDrawableHeight / 2);
+        drawable.draw(canvas);
+    }
+
+    @Override
+    public boolean onTouchEvent(MotionEvent event) {
+        if (event.getActionMasked() == MotionEvent.ACTION_DOWN) {
+            mFlingHelper.stop();
+        }
+        mFlingHelper.addMovement(event, 0, 0);
+        mPinchDetector.onTouchEvent(event, 0, 0);
+        switch (event.getActionMasked()) {
+            case MotionEvent.ACTION_DOWN:
+                mDragPointerId = event.getPointerId(0);
+                mPreMovePointF.set(event.getX(), event.getY());
+                mStatus = judgeStatus(event.getX(), event.getY());
+                if (mStatus == STATUS_OUT) {
+                    StickerElement hit = findElementAt(event.getX(), event.getY());
+                    setSelectedElement(hit);
+                    if (hit == null) {
+                        mStatus = STATUS_INIT;
+                        return super.onTouchEvent(event);
+                    }
+                }
+                mMoveCoalescer.begin(mPreMovePointF.x, mPreMovePointF.y);
+                beginSnap();
+                beginHistory();
+                break;
+            case MotionEvent.ACTION_MOVE:
+                if (mSelected == null || mStatus == STATUS_INIT) {
+                    break;
+                }
+                int dragIndex = Math.max(0, event.findPointerIndex(mDragPointerId));
+                mCurMovePointF.set(event.getX(dragIndex), event.getY(dragIndex));
+                if (mStatus == STATUS_OUT && TransformCore.distance(mPreMovePointF.x, mPreMovePointF.y, mCurMovePointF.x, mCurMovePointF.y) >= TOUCH_SLOP) {
+                    mStatus = STATUS_DRAG;
+                }
+                if (mStatus == STATUS_DRAG || mStatus == STATUS_ZOOM || mStatus == STATUS_ROTATE) {
+                    isClick = false;
+                    TransformCore transform = mSelected.getTransform();
+                    mMoveCoalescer.addEvent(event, dragIndex, 0, 0, transform.getCenterX(), transform.getCenterY(), true);
+                }
+                break;
+            case MotionEvent.ACTION_UP:
+                //先处理还没有到下一帧的移动
+                mMoveCoalescer.flush();
+                endAlign();
+                if (isClick && mStatus == STATUS_OUT && mSelected != null && mClickListener != null) {
+                    mClickListener.onClickElement(mSelected);
+                }
+                boolean isFling = false;
+                if (mStatus == STATUS_DRAG && mSelected != null) {
+                    //中心点不会滑出画布
+                    TransformCore transform = mSelected.getTransform();
+                    isFling = mFlingHelper.fling(event.getPointerId(event.getActionIndex()),
+                            (int) transform.getCenterX(), (int) transform.getCenterY(), 0, getWidth(), 0, getHeight());
+                }
+                if (!isFling) {
+                    //惯性滑动时在滑动结束后记录
+                    commitHistory();
+                }
+                isClick = true;
+                mStatus = STATUS_INIT;
+                break;
+            case MotionEvent.ACTION_POINTER_UP:
+                if (mStatus == STATUS_PINCH && !mPinchDetector.isInProgress()) {
+                    endPinch(event);
+                }
+                break;
+            case MotionEvent.ACTION_CANCEL:
+                mMoveCoalescer.cancel();
+                endAlign();
+                commitHistory();
+                isClick = true;
+                mStatus = STATUS_INIT;
+                break;
+        }
+        return true;
+    }
+
+    /**
+     * 通过网格索引查找包含该点的最上层元素
+     */
+    private StickerElement findElementAt(float x, float y) {
+        return mGridIndex.findTopMost(x, y);
+    }
+
+    /**
+     * 判断是否点中了选中元素的缩放、旋转图标
+     */
+    private int judgeStatus(float x, float y) {
+        if (mSelected == null) {
+            return STATUS_OUT;
+        }
+        float[] c = mSelected.getTransform().getCorners();
+        float radius = Math.min(mDrawableWidth / 2, mDrawableHeight / 2);
+        if (TransformCore.distance(x, y, c[4], c[5]) < radius) {
+            return STATUS_ZOOM;
+        }
+        if (TransformCore.distance(x, y, c[2], c[3]) < radius) {
+            return STATUS_ROTATE;
+        }
+        return STATUS_OUT;
+    }
+
+    private void actionDrag(StickerElement element) {
+        TransformCore transform = element.getTransform();
+        if (isAlignEnabled && !isAligning) {
+            beginAlign(element);
+        }
+        if (!isAligning) {
+            transform.setCenter(transform.getCenterX() + mCurMovePointF.x - mPreMovePointF.x,
+                    transform.getCenterY() + mCurMovePointF.y - mPreMovePointF.y);
+            transform.update();
+            return;
+        }
+        //原始中心点跟随手指，显示的中心点是吸附后的位置
+        mRawCenterX += mCurMovePointF.x - mPreMovePointF.x;
+        mRawCenterY += mCurMovePointF.y - mPreMovePointF.y;
+        transform.setCenter(mRawCenterX, mRawCenterY);
+        transform.update();
+        transform.getBounds(mAlignBounds);
+        if (mAlignmentGuide.snap(mAlignBounds, DisplayUtils.dip2px(getContext(), AlignmentGuide.DEFAULT_THRESHOLD))) {
+            transform.setCenter(mRawCenterX + mAlignmentGuide.getSnapDx(), mRawCenterY + mAlignmentGuide.getSnapDy());
+            transform.update();
+        }
+    }
+
+    /**
+     * 拖动开始时收集一次画布和其他元素的边缘，排序后拖动中只做二分查找
+     */
+    private void beginAlign(StickerElement dragging) {
+        isAligning = true;
+        TransformCore transform = dragging.getTransform();
+        mRawCenterX = transform.getCenterX();
+        mRawCenterY = transform.getCenterY();
+        mAlignmentGuide.clear();
+        mAlignmentGuide.addBounds(0, 0, getWidth(), getHeight());
+        for (int i = 0; i < mElements.size(); i++) {
+            StickerElement element = mElements.get(i);
+            if (element == dragging) {
+                continue;
+            }
+            element.getTransform().update();
+            element.getTransform().getBounds(mAlignBounds);
+            mAlignmentGuide.addBounds(mAlignBounds.left, mAlignBounds.top, mAlignBounds.right, mAlignBounds.bottom);
+        }
+        mAlignmentGuide.build();
+    }
+
+    private void endAlign() {
+        if (!isAligning) {
+            return;
+        }
+        isAligning = false;
+        mAlignmentGuide.clear();
+        //擦掉辅助线
+        mDirtyRegion.discard();
+        invalidate();
+    }
+
+    /**
+     * 合并后的一次移动
+     */
+    private void applyMove(float preX, float preY, float curX, float curY, float degreeDelta) {
+        if (mSelected == null) {
+            return;
+        }
+        mPreMovePointF.set(preX, preY);
+        mCurMovePointF.set(curX, curY);
+        if (mStatus == STATUS_ZOOM) {
+            actionZoom(mSelected);
+        } else if (mStatus == STATUS_DRAG) {
+            actionDrag(mSelected);
+        } else if (mStatus == STATUS_ROTATE) {
+            actionRotate(mSelected, degreeDelta);
+        }
+        mPreMovePointF.set(mCurMovePointF);
+        mGridIndex.update(mSelected);
+        invalidateSelected();
+    }
+
+    /**
+     * 第二根手指按下，已经点中元素或者控制点时开始双指手势
+     */
+    private boolean beginPinch() {
+        if (mSelected == null || (mStatus != STATUS_OUT && mStatus != STATUS_DRAG && mStatus != STATUS_ZOOM && mStatus != STATUS_ROTATE)) {
+            return false;
+        }
+        //先处理单指还没有到下一帧的移动
+        mMoveCoalescer.flush();
+        endAlign();
+        mStatus = STATUS_PINCH;
+        isClick = false;
+        mPinchStartScale = mSelected.getTransform().getScale();
+        mPinchScale = 1f;
+        beginSnap();
+        return true;
+    }
+
+    /**
+     * 两指中点的移动作为平移，缩放和旋转都以元素中心为基准，和控制点一致
+     */
+    private void applyPinch(float dx, float dy, float scaleFactor, float degreeDelta) {
+        if (mSelected == null) {
+            return;
+        }
+        TransformCore transform = mSelected.getTransform();
+        mRawDegree = mRawDegree + degreeDelta;
+        mPinchScale *= scaleFactor;
+        float scale = snapScale(mPinchStartScale * mPinchScale);
+        if (scale <= SignatureView.MIN_SCALE) {
+            scale = SignatureView.MIN_SCALE;
+        } else if (scale >= SignatureView.MAX_SCALE) {
+            scale = SignatureView.MAX_SCALE;
+        }
+        transform.setCenter(transform.getCenterX() + dx, transform.getCenterY() + dy);
+        transform.setDegree(snapDegree(mRawDegree));
+        transform.setScale(scale);
+        transform.update();
+        mGridIndex.update(mSelected);
+        invalidateSelected();
+    }
+
+    /**
+     * 双指手势结束，剩下的手指继续拖动
+     */
+    private void endPinch(MotionEvent event) {
+        //按id找剩下的手指，有第三根手指时它不一定在索引0或1
+        int index = event.findPointerIndex(mPinchDetector.getActivePointerId());
+        if (index < 0 || index == event.getActionIndex()) {
+            index = event.getActionIndex() == 0 ? 1 : 0;
+        }
+        mDragPointerId = event.getPointerId(index);
+        mStatus = STATUS_DRAG;
+        mPreMovePointF.set(event.getX(index), event.getY(index));
+        mMoveCoalescer.begin(mPreMovePointF.x, mPreMovePointF.y);
+        mFlingHelper.clearMovement();
+    }
+
+    /**
+     * 手势开始时记下选中元素的状态
+     */
+    private void beginHistory() {
+        mHistoryElement = mSelected;
+        if (mSelected == null) {
+            return;
+        }
+        TransformCore transform = mSelected.getTransform();
+        mHistoryX = transform.getCenterX();
+        mHistoryY = transform.getCenterY();
+        mHistoryDegree = transform.getDegree();
+        mHistoryScale = transform.getScale();
+    }
+
+    /**
+     * 手势结束（包括惯性滑动结束），状态有变化时记录一次
+     */
+    private void commitHistory() {
+        StickerElement element = mHistoryElement;
+        mHistoryElement = null;
+        //手势中元素可能已经被删除，删除时会移出网格索引
+        if (element == null || !element.isIndexed) {
+            return;
+        }
+        TransformCore transform = element.getTransform();
+        if (mHistoryX != transform.getCenterX() || mHistoryY != transform.getCenterY()
+                || mHistoryDegree != transform.getDegree() || mHistoryScale != transform.getScale()) {
+            mHistory.recordTransform(element, mHistoryX, mHistoryY, mHistoryDegree, mHistoryScale,
+                    transform.getCenterX(), transform.getCenterY(), transform.getDegree(), transform.getScale());
+        }
+    }
+
+    /**
+     * 手势开始时以当前角度为原始值，解除上一次手势的锁定
+     */
+    private void beginSnap() {
+        if (mSelected == null) {
+            return;
+        }
+        TransformCore transform = mSelected.getTransform();
+        mRawDegree = transform.getDegree();
+        mDegreeSnapper.reset();
+        mScaleSnapper.reset();
+        //内容宽度和画布宽度一致时的缩放
+        mScaleSnapper.setExtraPoint(isSnapToFitWidth && transform.getWidth() > 0 ? getWidth() / transform.getWidth() : Float.NaN);
+    }
+
+    private float snapDegree(float rawDegree) {
+        return isSnapEnabled ? mDegreeSnapper.snap(rawDegree) : rawDegree;
+    }
+
+    private float snapScale(float rawScale) {
+        return isSnapEnabled ? mScaleSnapper.snap(rawScale) : rawScale;
+    }
+
+    /**
+     * @param degreeDelta 所有采样点累积的旋转角度，顺时针为正，逆时针为负
+     */
+    private void actionRotate(StickerElement element, float degreeDelta) {
+        TransformCore transform = element.getTransform();
+        mRawDegree = mRawDegree + degreeDelta;
+        transform.setDegree(snapDegree(mRawDegree));
+        transform.update();
+    }
+
+    private void actionZoom(StickerElement element) {
+        TransformCore transform = element.getTransform();
+        //内容某个角到中心的距离
+        float halfDiagonal = TransformCore.distance(0, 0, transform.getWidth() / 2, transform.getHeight() / 2);
+        if (halfDiagonal <= 0) {
+            return;
+        }
+        //移动的点到中心的距离
+        float moveToCenterDistance = TransformCore.distance(transform.getCenterX(), transform.getCenterY(),
+                mCurMovePointF.x, mCurMovePointF.y);
+        float scale = snapScale(moveToCenterDistance / halfDiagonal);
+        //缩放比例的界限判断
+        if (scale <= SignatureView.MIN_SCALE) {
+            scale = SignatureView.MIN_SCALE;
+        } else if (scale >= SignatureView.MAX_SCALE) {
+            scale = SignatureView.MAX_SCALE;
+        }
+        transform.setScale(scale);
+        transform.update();
+    }
+
+    public interface IClickListener {
+        void onClickElement(StickerElement element);
+    }
+}
@@ -0,0 +1,113 @@
+package com.ccsf.snappingview;
+
+import android.graphics.Bitmap;
+import android.os.Handler;
+import android.os.Looper;
+import android.util.LruCache;
+
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+/**
+ * 按key缓存贴纸的Bitmap内容，例如Text2BitmapUtils生成的签名图片
+ * <p>
+ * 屏幕旋转等配置变化后恢复状态时直接复用内存中的Bitmap，不需要重新生成；进程被回收后缓存为空，
+ * 通过setLoader设置的Loader在后台线程重新生成或从文件读取，完成后回到主线程交给调用方
+ */
+public class StickerContentCache {
+
+    private static final LruCache<String, Bitmap> sCache = new LruCache<String, Bitmap>((int) (Runtime.getRuntime().maxMemory() / 8)) {
+        @Override
+        protected int sizeOf(String key, Bitmap value) {
+            return value.getByteCount();
+        }
+    };
+    private static final ExecutorService sExecutor = Executors.newSingleThreadExecutor();
+    private static final Handler sMainHandler = new Handler(Looper.getMainLooper());
+    private static Loader sLoader;
+
+    private StickerContentCache() {
+    }
+
+    public static void put(String key, Bitmap bitmap) {
+        if (key == null || bitmap == null) {
+            throw new NullPointerException("key和bitmap不能为空");
+        }
+        sCache.put(key, bitmap);
+    }
+
+    public static Bitmap get(String key) {
+        return key == null ? null : sCache.get(key);
+    }
+
+    public static void remove(String key) {
+        if (key != null) {
+            sCache.remove(key);
+        }
+    }
+
+    public static void clear() {
+        sCache.evictAll();
+    }
+
+    /**
+     * 设置缓存中没有时的加载方式，一般在Application中设置一次
+     */
+    public static void setLoader(Loader loader) {
+        sLoader = loader;
+    }
+
+    /**
+     * 异步获取内容，已经缓存时也在下一次主线程消息中回调
+     *
+     * @param key      内容的key
+     * @param callback 在主线程中回调，没有缓存也没有Loader或者加载失败时bitmap为null
+     * @return 可以用来取消的Future，已经缓存时为null
+     */
+    public static Future<?> load(final String key, final Callback callback) {
+        if (key == null || callback == null) {
+            throw new NullPointerException("key和callback不能为空");
+        }
+        final Bitmap cached = sCache.get(key);
+        final Loader loader = sLoader;
+        if (cached != null || loader == null) {
+            sMainHandler.post(new Runnable() {
+                @Override
+                public void run() {
+                    callback.onContentReady(key, cached);
+                }
+            });
+            return null;
+        }
+        return sExecutor.submit(new Runnable() {
+            @Override
+            public void run() {
+                final Bitmap bitmap = loader.load(key);
+                if (bitmap != null) {
+                    sCache.put(key, bitmap);
+                }
+                sMainHandler.post(new Runnable() {
+                    @Override
+                    public void run() {
+                        callback.onContentReady(key, bitmap);
+                    }
+                });
+            }
+        });
+    }
+
+    public interface Loader {
+        /**
+         * 在后台线程中调用
+         *
+         * @param key 内容的key
+         * @return 生成或读取的Bitmap，失败时返回null
+         */
+        Bitmap load(String key);
+    }
+
+    public interface Callback {
+        void onContentReady(String key, Bitmap bitmap);
+    }
+}
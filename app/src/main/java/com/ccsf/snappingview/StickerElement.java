@@ -0,0 +1,80 @@
+package com.ccsf.snappingview;
+
+import android.graphics.Canvas;
+
+/**
+ * StickerCanvasView中的轻量贴纸元素，只保存内容和变换，不对应任何View
+ */
+public abstract class StickerElement {
+
+    /**
+     * 元素的中心点、缩放和旋转，坐标相对于StickerCanvasView
+     */
+    protected final TransformCore mTransform = new TransformCore();
+
+    /**
+     * 加入画布时还没有确定中心点，等画布有了尺寸后放到画布中心
+     */
+    boolean isCenterPending = false;
+
+    /**
+     * 层级，数值越大越在上层，由StickerCanvasView分配
+     */
+    int zIndex;
+
+    /**
+     * StickerGridIndex中登记的格子范围
+     */
+    boolean isIndexed;
+    int mCellLeft, mCellTop, mCellRight, mCellBottom;
+
+    public TransformCore getTransform() {
+        return mTransform;
+    }
+
+    /**
+     * 未缩放的内容宽度
+     */
+    public abstract int getContentWidth();
+
+    /**
+     * 未缩放的内容高度
+     */
+    public abstract int getContentHeight();
+
+    /**
+     * 在内容坐标系（左上角为原点，未缩放）中绘制内容
+     *
+     * @param canvas
+     */
+    protected abstract void drawContent(Canvas canvas);
+
+    /**
+     * 内容尺寸变化后同步到变换中
+     */
+    protected void updateContentSize() {
+        mTransform.setSize(getContentWidth(), getContentHeight());
+        mTransform.update();
+    }
+
+    /**
+     * 按当前变换绘制到画布上
+     *
+     * @param canvas
+     */
+    public void draw(Canvas canvas) {
+        mTransform.update();
+        int saveCount = canvas.save();
+        canvas.concat(mTransform.getMatrix());
+        drawContent(canvas);
+        canvas.restoreToCount(saveCount);
+    }
+
+    /**
+     * 点是否落在旋转后的内容范围内
+     */
+    public boolean contains(float x, float y) {
+        mTransform.update();
+        return mTransform.contains(x, y);
+    }
+}
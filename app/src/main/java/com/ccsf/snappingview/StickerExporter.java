@@ -0,0 +1,107 @@
+package com.ccsf.snappingview;
+
+import android.content.Context;
+import android.graphics.Bitmap;
+import android.graphics.Canvas;
+import android.graphics.Color;
+import android.graphics.Paint;
+import android.graphics.PaintFlagsDrawFilter;
+import android.graphics.RectF;
+
+/**
+ * 离屏导出贴纸元素，按任意缩放比例直接绘制到Bitmap中，并裁剪到旋转后的外接矩形
+ * <p>
+ * 不依赖View和DrawingCache，可以在子线程中执行；元素需要先在主线程通过toElement等方式生成快照，导出期间不要再修改。
+ * 一个实例内部复用Canvas和临时变换，不能同时在多个线程中使用
+ */
+public class StickerExporter {
+
+    /**
+     * 角度是90度的倍数且缩放为1时只有整数平移，关闭位图过滤按像素直接拷贝
+     */
+    private static final PaintFlagsDrawFilter NO_FILTER_DRAW_FILTER = new PaintFlagsDrawFilter(Paint.FILTER_BITMAP_FLAG, 0);
+    private static final float ALIGN_EPSILON = 0.001f;
+
+    private final TransformCore mTransform = new TransformCore();
+    private final RectF mBounds = new RectF();
+    private final Canvas mCanvas = new Canvas();
+
+    /**
+     * 目标DPI相对于屏幕DPI的缩放比例，例如打印时传300
+     *
+     * @param context
+     * @param targetDpi
+     * @return
+     */
+    public static float scaleForDpi(Context context, int targetDpi) {
+        return (float) targetDpi / context.getResources().getDisplayMetrics().densityDpi;
+    }
+
+    /**
+     * 导出到新建的Bitmap中
+     *
+     * @param element     要导出的元素
+     * @param outputScale 在元素自身缩放基础上的输出缩放比例
+     * @return
+     */
+    public Bitmap export(StickerElement element, float outputScale) {
+        return export(element, outputScale, null);
+    }
+
+    /**
+     * 导出到reuse中，reuse可变且内存足够时通过reconfigure复用，否则新建Bitmap
+     *
+     * @param element     要导出的元素
+     * @param outputScale 在元素自身缩放基础上的输出缩放比例
+     * @param reuse       可以复用的Bitmap，可以为null，例如上一次导出的结果
+     * @return 导出结果，可能就是reuse
+     */
+    public Bitmap export(StickerElement element, float outputScale, Bitmap reuse) {
+        if (element == null) {
+            throw new NullPointerException("element不能为空");
+        }
+        if (outputScale <= 0) {
+            throw new IllegalArgumentException("outputScale必须大于0");
+        }
+        //只保留旋转和缩放，先以原点为中心求出外接矩形，再平移到左上角为(0, 0)
+        mTransform.set(element.getTransform());
+        mTransform.setScale(mTransform.getScale() * outputScale);
+        mTransform.setCenter(0, 0);
+        mTransform.update();
+        mTransform.getBounds(mBounds);
+        int width = Math.max(1, (int) Math.ceil(mBounds.width()));
+        int height = Math.max(1, (int) Math.ceil(mBounds.height()));
+        mTransform.setCenter(width / 2f, height / 2f);
+        mTransform.update();
+
+        Bitmap bitmap = obtainBitmap(reuse, width, height);
+        mCanvas.setBitmap(bitmap);
+        mCanvas.setDrawFilter(isPixelAligned(mTransform) ? NO_FILTER_DRAW_FILTER : null);
+        int saveCount = mCanvas.save();
+        mCanvas.concat(mTransform.getMatrix());
+        element.drawContent(mCanvas);
+        mCanvas.restoreToCount(saveCount);
+        mCanvas.setBitmap(null);
+        return bitmap;
+    }
+
+    /**
+     * 吸附后的角度和缩放是精确值，按像素对齐导出时不需要重采样
+     */
+    private static boolean isPixelAligned(TransformCore transform) {
+        return Math.abs(transform.getDegree() % 90) < ALIGN_EPSILON
+                && Math.abs(transform.getScale() - 1f) < ALIGN_EPSILON;
+    }
+
+    private static Bitmap obtainBitmap(Bitmap reuse, int width, int height) {
+        if (reuse != null && !reuse.isRecycled() && reuse.isMutable()
+                && reuse.getAllocationByteCount() >= width * height * 4) {
+            if (reuse.getWidth() != width || reuse.getHeight() != height || reuse.getConfig() != Bitmap.Config.ARGB_8888) {
+                reuse.reconfigure(width, height, Bitmap.Config.ARGB_8888);
+            }
+            reuse.eraseColor(Color.TRANSPARENT);
+            return reuse;
+        }
+        return Bitmap.createBitmap(width, height, Bitmap.Config.ARGB_8888);
+    }
+}
@@ -0,0 +1,178 @@
+package com.ccsf.snappingview;
+
+import android.graphics.RectF;
+import android.util.LongSparseArray;
+
+import java.util.ArrayList;
+
+/**
+ * 贴纸元素的均匀网格索引，按旋转后的外接矩形登记到覆盖的格子中
+ * <p>
+ * 元素移动后只对新旧覆盖范围的差集做增删，空出来的格子列表放回池中复用；
+ * 点击查询只检查该点所在格子里的元素，取层级最高的命中元素
+ */
+public class StickerGridIndex {
+
+    public static final int DEFAULT_CELL_SIZE = 128;
+    private static final int MAX_POOL_SIZE = 256;
+
+    private final int mCellSize;
+
+    /**
+     * 格子坐标打包成long作为key，二分查找
+     */
+    private final LongSparseArray<ArrayList<StickerElement>> mCells = new LongSparseArray<>();
+    private final ArrayList<ArrayList<StickerElement>> mCellPool = new ArrayList<>();
+    private final RectF mTmpBounds = new RectF();
+
+    public StickerGridIndex() {
+        this(DEFAULT_CELL_SIZE);
+    }
+
+    public StickerGridIndex(int cellSize) {
+        if (cellSize <= 0) {
+            throw new IllegalArgumentException("cellSize必须大于0");
+        }
+        mCellSize = cellSize;
+    }
+
+    private static long key(int cellX, int cellY) {
+        return ((long) cellY << 32) | (cellX & 0xffffffffL);
+    }
+
+    private int toCell(float value) {
+        return (int) Math.floor(value / mCellSize);
+    }
+
+    /**
+     * 添加元素或者在元素的变换变化后更新索引，覆盖的格子没有变化时不做任何操作
+     *
+     * @param element
+     */
+    public void update(StickerElement element) {
+        TransformCore transform = element.getTransform();
+        transform.update();
+        transform.getBounds(mTmpBounds);
+        int left = toCell(mTmpBounds.left);
+        int top = toCell(mTmpBounds.top);
+        int right = toCell(mTmpBounds.right);
+        int bottom = toCell(mTmpBounds.bottom);
+        if (!element.isIndexed) {
+            for (int y = top; y <= bottom; y++) {
+                for (int x = left; x <= right; x++) {
+                    addToCell(x, y, element);
+                }
+            }
+            element.isIndexed = true;
+        } else {
+            int oldLeft = element.mCellLeft;
+            int oldTop = element.mCellTop;
+            int oldRight = element.mCellRight;
+            int oldBottom = element.mCellBottom;
+            if (oldLeft == left && oldTop == top && oldRight == right && oldBottom == bottom) {
+                return;
+            }
+            //只处理离开和新进入的格子，两次都覆盖的格子不动
+            for (int y = oldTop; y <= oldBottom; y++) {
+                for (int x = oldLeft; x <= oldRight; x++) {
+                    if (x < left || x > right || y < top || y > bottom) {
+                        removeFromCell(x, y, element);
+                    }
+                }
+            }
+            for (int y = top; y <= bottom; y++) {
+                for (int x = left; x <= right; x++) {
+                    if (x < oldLeft || x > oldRight || y < oldTop || y > oldBottom) {
+                        addToCell(x, y, element);
+                    }
+                }
+            }
+        }
+        element.mCellLeft = left;
+        element.mCellTop = top;
+        element.mCellRight = right;
+        element.mCellBottom = bottom;
+    }
+
+    private void addToCell(int x, int y, StickerElement element) {
+        long key = key(x, y);
+        ArrayList<StickerElement> cell = mCells.get(key);
+        if (cell == null) {
+            int poolSize = mCellPool.size();
+            cell = poolSize > 0 ? mCellPool.remove(poolSize - 1) : new ArrayList<StickerElement>();
+            mCells.put(key, cell);
+        }
+        cell.add(element);
+    }
+
+    private void removeFromCell(int x, int y, StickerElement element) {
+        long key = key(x, y);
+        ArrayList<StickerElement> cell = mCells.get(key);
+        if (cell != null) {
+            cell.remove(element);
+            if (cell.isEmpty()) {
+                mCells.remove(key);
+                recycleCell(cell);
+            }
+        }
+    }
+
+    private void recycleCell(ArrayList<StickerElement> cell) {
+        if (mCellPool.size() < MAX_POOL_SIZE) {
+            mCellPool.add(cell);
+        }
+    }
+
+    /**
+     * 从索引中移除元素
+     */
+    public void remove(StickerElement element) {
+        if (element.isIndexed) {
+            removeFromCells(element);
+            element.isIndexed = false;
+        }
+    }
+
+    public void clear() {
+        for (int i = 0; i < mCells.size(); i++) {
+            ArrayList<StickerElement> cell = mCells.valueAt(i);
+            for (int j = 0; j < cell.size(); j++) {
+                cell.get(j).isIndexed = false;
+            }
+            cell.clear();
+            recycleCell(cell);
+        }
+        mCells.clear();
+    }
+
+    private void removeFromCells(StickerElement element) {
+        for (int y = element.mCellTop; y <= element.mCellBottom; y++) {
+            for (int x = element.mCellLeft; x <= element.mCellRight; x++) {
+                removeFromCell(x, y, element);
+            }
+        }
+    }
+
+    /**
+     * 查找包含该点的层级最高的元素
+     *
+     * @return 没有命中时返回null
+     */
+    public StickerElement findTopMost(float x, float y) {
+        ArrayList<StickerElement> cell = mCells.get(key(toCell(x), toCell(y)));
+        if (cell == null) {
+            return null;
+        }
+        StickerElement result = null;
+        for (int i = 0; i < cell.size(); i++) {
+            StickerElement element = cell.get(i);
+            if (result != null && element.zIndex < result.zIndex) {
+                continue;
+            }
+            if (element.contains(x, y)) {
+                result = element;
+            }
+        }
+        return result;
+    }
+}
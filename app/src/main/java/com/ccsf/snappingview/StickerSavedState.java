@@ -0,0 +1,84 @@
+package com.ccsf.snappingview;
+
+import android.os.Parcel;
+import android.os.Parcelable;
+import android.text.Layout;
+import android.view.View;
+
+/**
+ * SignatureView和SignatureTextView保存的状态
+ * <p>
+ * 只保存文字或者内容的key，不保存Bitmap；Bitmap内容恢复时通过key从StickerContentCache中获取
+ */
+public class StickerSavedState extends View.BaseSavedState {
+
+    /**
+     * 文字内容，图片贴纸为null
+     */
+    String content;
+    /**
+     * 图片内容在StickerContentCache中的key，可以为null
+     */
+    String contentKey;
+    float centerX;
+    float centerY;
+    float degree;
+    /**
+     * SignatureView保存缩放比例，SignatureTextView保存字号
+     */
+    float scale;
+    int textColor;
+    /**
+     * Layout.Alignment的序号
+     */
+    int textAlign;
+    boolean isEditable;
+
+    StickerSavedState(Parcelable superState) {
+        super(superState);
+    }
+
+    private StickerSavedState(Parcel source) {
+        super(source);
+        content = source.readString();
+        contentKey = source.readString();
+        centerX = source.readFloat();
+        centerY = source.readFloat();
+        degree = source.readFloat();
+        scale = source.readFloat();
+        textColor = source.readInt();
+        textAlign = source.readInt();
+        isEditable = source.readInt() != 0;
+    }
+
+    @Override
+    public void writeToParcel(Parcel out, int flags) {
+        super.writeToParcel(out, flags);
+        out.writeString(content);
+        out.writeString(contentKey);
+        out.writeFloat(centerX);
+        out.writeFloat(centerY);
+        out.writeFloat(degree);
+        out.writeFloat(scale);
+        out.writeInt(textColor);
+        out.writeInt(textAlign);
+        out.writeInt(isEditable ? 1 : 0);
+    }
+
+    Layout.Alignment getTextAlign(Layout.Alignment defaultAlign) {
+        Layout.Alignment[] values = Layout.Alignment.values();
+        return textAlign >= 0 && textAlign < values.length ? values[textAlign] : defaultAlign;
+    }
+
+    public static final Parcelable.Creator<StickerSavedState> CREATOR = new Parcelable.Creator<StickerSavedState>() {
+        @Override
+        public StickerSavedState createFromParcel(Parcel source) {
+            return new StickerSavedState(source);
+        }
+
+        @Override
+        public StickerSavedState[] newArray(int size) {
+            return new StickerSavedState[size];
+        }
+    };
+}
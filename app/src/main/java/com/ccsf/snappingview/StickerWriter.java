@@ -0,0 +1,205 @@
+package com.ccsf.snappingview;
+
+import android.graphics.Bitmap;
+import android.os.ParcelFileDescriptor;
+
+import java.io.BufferedOutputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.io.OutputStream;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.zip.Deflater;
+
+/**
+ * 把导出结果编码后直接写到OutputStream、FileChannel或者ParcelFileDescriptor中，不再由调用方复制和压缩
+ * <p>
+ * 分块合成时只支持PNG：按整行条带编码，下一条带的合成和上一条带的压缩在两个线程中同时进行。
+ * 写入方法都不会关闭传入的流、通道或者文件描述符
+ */
+public class StickerWriter {
+
+    private static final int BUFFER_SIZE = 64 * 1024;
+
+    private final Bitmap.CompressFormat mFormat;
+    private final int mQuality;
+    private int mPngCompressionLevel = Deflater.DEFAULT_COMPRESSION;
+
+    /**
+     * @param format  编码格式
+     * @param quality 压缩质量0-100，PNG忽略
+     */
+    public StickerWriter(Bitmap.CompressFormat format, int quality) {
+        if (format == null) {
+            throw new NullPointerException("format不能为空");
+        }
+        if (quality < 0 || quality > 100) {
+            throw new IllegalArgumentException("quality必须在0到100之间");
+        }
+        mFormat = format;
+        mQuality = quality;
+    }
+
+    /**
+     * 分块写PNG时使用的压缩级别，默认Deflater.DEFAULT_COMPRESSION
+     */
+    public void setPngCompressionLevel(int level) {
+        this.mPngCompressionLevel = level;
+    }
+
+    public void write(Bitmap bitmap, OutputStream out) throws IOException {
+        OutputStream stream = new BufferedOutputStream(out, BUFFER_SIZE);
+        if (!bitmap.compress(mFormat, mQuality, stream)) {
+            throw new IOException("Bitmap编码失败");
+        }
+        stream.flush();
+    }
+
+    public void write(Bitmap bitmap, FileChannel channel) throws IOException {
+        write(bitmap, Channels.newOutputStream(channel));
+    }
+
+    public void write(Bitmap bitmap, ParcelFileDescriptor fd) throws IOException {
+        write(bitmap, new FileOutputStream(fd.getFileDescriptor()));
+    }
+
+    /**
+     * 导出元素并写入out，reuse会被导出复用
+     *
+     * @return 导出用的Bitmap，可以作为下一次的reuse
+     */
+    public Bitmap writeElement(StickerExporter exporter, StickerElement element, float outputScale,
+                               Bitmap reuse, OutputStream out) throws IOException {
+        Bitmap bitmap = exporter.export(element, outputScale, reuse);
+        write(bitmap, out);
+        return bitmap;
+    }
+
+    /**
+     * 分块合成并以PNG写入out
+     * <p>
+     * 需要两条整行宽度、分块高度的像素条带，内存不够时可以减小分块大小
+     *
+     * @param compositor 分块合成器
+     * @param out        输出流
+     * @throws IOException
+     */
+    public void writeTiled(TiledCompositor compositor, OutputStream out) throws IOException {
+        if (mFormat != Bitmap.CompressFormat.PNG) {
+            throw new IllegalArgumentException("分块写入只支持PNG");
+        }
+        OutputStream stream = new BufferedOutputStream(out, BUFFER_SIZE);
+        PngStreamEncoder encoder = new PngStreamEncoder(stream, compositor.getPageWidth(),
+                compositor.getPageHeight(), mPngCompressionLevel);
+        ExecutorService executor = Executors.newSingleThreadExecutor();
+        boolean isFinished = false;
+        try {
+            encoder.writeHeader();
+            StripSink sink = new StripSink(encoder, executor, compositor.getPageWidth(), compositor.getTileSize());
+            compositor.composite(sink);
+            sink.awaitPending();
+            encoder.finish();
+            stream.flush();
+            isFinished = true;
+        } finally {
+            //出错时等正在编码的条带结束，返回后不会再有线程写调用方的流或者使用Deflater
+            executor.shutdownNow();
+            awaitTermination(executor);
+            if (!isFinished) {
+                encoder.release();
+            }
+        }
+    }
+
+    private static void awaitTermination(ExecutorService executor) {
+        boolean isInterrupted = false;
+        while (true) {
+            try {
+                if (executor.awaitTermination(Long.MAX_VALUE, TimeUnit.MILLISECONDS)) {
+                    break;
+                }
+            } catch (InterruptedException e) {
+                isInterrupted = true;
+            }
+        }
+        if (isInterrupted) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    public void writeTiled(TiledCompositor compositor, FileChannel channel) throws IOException {
+        writeTiled(compositor, Channels.newOutputStream(channel));
+    }
+
+    public void writeTiled(TiledCompositor compositor, ParcelFileDescriptor fd) throws IOException {
+        writeTiled(compositor, new FileOutputStream(fd.getFileDescriptor()));
+    }
+
+    /**
+     * 把一行分块拼成整行宽度的条带，拼满后交给编码线程，同时开始填下一个条带
+     */
+    private static class StripSink implements TiledCompositor.TileSink {
+
+        private final PngStreamEncoder mEncoder;
+        private final ExecutorService mExecutor;
+        private final int mPageWidth;
+        private final int[][] mStrips;
+        private int mCurrent = 0;
+        private Future<Void> mPending;
+
+        StripSink(PngStreamEncoder encoder, ExecutorService executor, int pageWidth, int tileSize) {
+            mEncoder = encoder;
+            mExecutor = executor;
+            mPageWidth = pageWidth;
+            mStrips = new int[2][pageWidth * tileSize];
+        }
+
+        @Override
+        public void onTile(Bitmap tile, int left, int top) throws IOException {
+            int width = tile.getWidth();
+            final int rows = tile.getHeight();
+            final int[] strip = mStrips[mCurrent];
+            tile.getPixels(strip, left, mPageWidth, 0, 0, width, rows);
+            if (left + width < mPageWidth) {
+                return;
+            }
+            //另一个条带编码完成后才能交出这一个，之后再往另一个条带里填像素
+            awaitPending();
+            mPending = mExecutor.submit(new Callable<Void>() {
+                @Override
+                public Void call() throws IOException {
+                    mEncoder.writeRows(strip, 0, mPageWidth, rows);
+                    return null;
+                }
+            });
+            mCurrent ^= 1;
+        }
+
+        void awaitPending() throws IOException {
+            if (mPending == null) {
+                return;
+            }
+            try {
+                mPending.get();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new InterruptedIOException("等待编码时被中断");
+            } catch (ExecutionException e) {
+                Throwable cause = e.getCause();
+                if (cause instanceof IOException) {
+                    throw (IOException) cause;
+                }
+                throw new RuntimeException(cause);
+            } finally {
+                mPending = null;
+            }
+        }
+    }
+}
@@ -1,6 +1,7 @@
 package com.ccsf.snappingview;
 
 import android.content.Context;
+import android.content.res.Resources;
 import android.graphics.Bitmap;
 import android.graphics.Canvas;
 import android.graphics.Color;
@@ -14,7 +15,6 @@ import android.text.Layout;
 import android.text.StaticLayout;
 import android.text.TextPaint;
 import android.util.AttributeSet;
-import android.util.Log;
 import android.view.MotionEvent;
 import android.view.View;
 import android.view.ViewGroup;
@@ -24,8 +24,6 @@ import androidx.annotation.Nullable;
 import java.util.ArrayList;
 import java.util.List;
 
-import static com.ccsf.snappingview.SignatureTextView.isPolygonContainsPoint;
-
 public class TestView extends View {
     /**
      * 图片的最大缩放比例
@@ -115,6 +113,17 @@ public class TestView extends View {
     private Point mInitRBPoint = new Point();
     private Point mInitLBPoint = new Point();
     private Point contentCenterPoint = new Point();
+    /**
+     * 计算旋转时复用的临时点
+     */
+    private final Point mTmpLT = new Point();
+    private final Point mTmpRT = new Point();
+    private final Point mTmpRB = new Point();
+    private final Point mTmpLB = new Point();
+    /**
+     * 内容的中心点、缩放和旋转，四个角由它统一计算
+     */
+    private final TransformCore mTransformCore = new TransformCore();
     /**
      * 用于缩放，旋转的控制点的坐标
      */
@@ -219,6 +228,7 @@ public class TestView extends View {
     private int leftEditBitmapOffset;
     private int topEditBitmapOffset;
     private List<Bitmap> tabBitmapList = new ArrayList<>();
+    private boolean isIconsAcquired = false;
     private SignatureTextView.IClickListener mClickListener = null;
 
     private String content;
@@ -327,20 +337,16 @@ public class TestView extends View {
         mPaint.setColor(frameColor);
         mPaint.setStrokeWidth(frameWidth);
         mPaint.setStyle(Paint.Style.STROKE);
-        if (zoomDrawable == null) {
-            zoomDrawable = getContext().getResources().getDrawable(R.mipmap.icon_zoom);
-        }
-        if (rotateDrawable == null) {
-            rotateDrawable = getContext().getResources().getDrawable(R.mipmap.icon_rotate);
-        }
-        mDrawableWidth = zoomDrawable.getIntrinsicWidth();
-        mDrawableHeight = zoomDrawable.getIntrinsicHeight();
+        //图标在onAttachedToWindow中才获取，这里只查询尺寸，不占用引用计数
+        Resources res = getContext().getResources();
+        Drawable zoom = IconPool.peekDrawable(res, R.mipmap.icon_zoom);
+        mDrawableWidth = zoom.getIntrinsicWidth();
+        mDrawableHeight = zoom.getIntrinsicHeight();
         halfDrawableWidth = mDrawableWidth / 2;
         halfDrawableHeight = mDrawableHeight / 2;
-        if (rotateDrawable != null) {
-            mDeleteDrawableHeight = rotateDrawable.getIntrinsicHeight();
-            mDeleteDrawableWidth = rotateDrawable.getIntrinsicWidth();
-        }
+        Drawable rotate = IconPool.peekDrawable(res, R.mipmap.icon_rotate);
+        mDeleteDrawableHeight = rotate.getIntrinsicHeight();
+        mDeleteDrawableWidth = rotate.getIntrinsicWidth();
         mControlPoint = LocationToPoint(controlLocation);
         mDeletePoint = LocationToPoint(DEFAULT_DELETE_LOCATION);
 
@@ -351,6 +357,41 @@ public class TestView extends View {
         mContentHeight = mLBPoint.y - mLTPoint.y;
     }
 
+    /**
+     * 从共享缓存中获取控制图标
+     */
+    private void acquireIcons() {
+        if (isIconsAcquired) {
+            return;
+        }
+        Resources res = getContext().getResources();
+        zoomDrawable = IconPool.acquireDrawable(res, R.mipmap.icon_zoom);
+        rotateDrawable = IconPool.acquireDrawable(res, R.mipmap.icon_rotate);
+        isIconsAcquired = true;
+    }
+
+    private void releaseIcons() {
+        if (!isIconsAcquired) {
+            return;
+        }
+        Resources res = getContext().getResources();
+        IconPool.releaseDrawable(res, R.mipmap.icon_zoom);
+        IconPool.releaseDrawable(res, R.mipmap.icon_rotate);
+        isIconsAcquired = false;
+    }
+
+    @Override
+    protected void onAttachedToWindow() {
+        super.onAttachedToWindow();
+        acquireIcons();
+    }
+
+    @Override
+    protected void onDetachedFromWindow() {
+        super.onDetachedFromWindow();
+        releaseIcons();
+    }
+
     private void initPoint() {
         mLTPoint.set(0, halfDrawableHeight);
         mLBPoint.set(0, halfDrawableHeight + mInitContentHeight);
@@ -363,6 +404,11 @@ public class TestView extends View {
         mInitRTPoint.set(mRTPoint.x, mRTPoint.y);
 
         contentCenterPoint.set((mLTPoint.x + mRBPoint.x) / 2, (mLTPoint.y + mRBPoint.y) / 2);
+        //点击判断使用TransformCore的四个角
+        mTransformCore.setCenter(contentCenterPoint.x, contentCenterPoint.y);
+        mTransformCore.setSize(mInitContentWidth, mInitContentHeight);
+        mTransformCore.setDegree(mDegree);
+        mTransformCore.update();
     }
 
     private void transform() {
@@ -407,7 +453,7 @@ public class TestView extends View {
         switch (event.getAction()) {
             case MotionEvent.ACTION_DOWN:
                 mStatus = JudgeStatus(event.getX(), event.getY());
-                if (mStatus != STATUS_OUT || isPolygonContainsPoint(new Point((int) event.getX(), (int) event.getY()), mRTPoint, mRBPoint, mLBPoint, mLTPoint)) {
+                if (mStatus != STATUS_OUT || mTransformCore.contains(event.getX(), event.getY())) {
                     isEditable = true;
                     mPreMovePointF.set(event.getX() + mViewPaddingLeft, event.getY() + mViewPaddingTop);
                 } else {
@@ -444,7 +490,7 @@ public class TestView extends View {
                 break;
             case MotionEvent.ACTION_MOVE:
                 mCurMovePointF.set(event.getX() + mViewPaddingLeft, event.getY() + mViewPaddingTop);
-                if (mStatus == STATUS_OUT && distance4PointF(mPreMovePointF, mCurMovePointF) >= 10) {//移动超过10才算滑动
+                if (mStatus == STATUS_OUT && TransformCore.distance(mPreMovePointF.x, mPreMovePointF.y, mCurMovePointF.x, mCurMovePointF.y) >= 10) {//移动超过10才算滑动
                     mStatus = STATUS_DRAG;
                 }
                 if (mStatus == STATUS_DRAG || mStatus == STATUS_ZOOM || mStatus == STATUS_ROTATE) {
@@ -466,29 +512,35 @@ public class TestView extends View {
     }
 
     private void actionTextZoom() {
-        contentCenterPoint = new Point((int) mCurMovePointF.x / 2, (int) (mCurMovePointF.y + mLTPoint.y) / 2);
+        contentCenterPoint.set((int) mCurMovePointF.x / 2, (int) (mCurMovePointF.y + mLTPoint.y) / 2);
+        mTransformCore.setCenter(contentCenterPoint.x, contentCenterPoint.y);
+        mTransformCore.setDegree(mDegree);
         // 讲旋转后的点回旋回去
-        Point rbPoint = new Point(); // 右下角的点
-        Point ltPoint = new Point(); // 左上角的点
-        obtainRoationPoint(rbPoint, contentCenterPoint, mCurMovePointF, -mDegree);
-        obtainRoationPoint(ltPoint, contentCenterPoint, mLTPoint, -mDegree);
-
-        Log.d("snapping", "旋转回原点：rbPoint-" + rbPoint.toString() + ",ltPoint-" + ltPoint.toString());
+        Point rbPoint = mTmpRB; // 右下角的点
+        Point ltPoint = mTmpLT; // 左上角的点
+        mTransformCore.rotatePoint(rbPoint, mCurMovePointF.x, mCurMovePointF.y, true);
+        mTransformCore.rotatePoint(ltPoint, mLTPoint.x, mLTPoint.y, true);
 
         // 根据旋转后的对角点，算出其他两点的坐标
         // 左下角的点为右下角的y坐标,x坐标为左上角的x坐标
         // 右上角的点为右下角的x坐标，y坐标为左上角的y坐标
-        Point lbPoint = new Point(ltPoint.x, rbPoint.y);
-        Point rtPoint = new Point(rbPoint.x, ltPoint.y);
+        Point lbPoint = mTmpLB;
+        Point rtPoint = mTmpRT;
+        lbPoint.set(ltPoint.x, rbPoint.y);
+        rtPoint.set(rbPoint.x, ltPoint.y);
 
         mContentWidth = Math.abs(ltPoint.x - rbPoint.x);
         mContentHeight = Math.abs(ltPoint.y - rbPoint.y);
 
         //回去旋转后的状态
-        obtainRoationPoint(mLTPoint, contentCenterPoint, ltPoint, mDegree);
-        obtainRoationPoint(mRTPoint, contentCenterPoint, rtPoint, mDegree);
-        obtainRoationPoint(mRBPoint, contentCenterPoint, rbPoint, mDegree);
-        obtainRoationPoint(mLBPoint, contentCenterPoint, lbPoint, mDegree);
+        mTransformCore.rotatePoint(mLTPoint, ltPoint.x, ltPoint.y, false);
+        mTransformCore.rotatePoint(mRTPoint, rtPoint.x, rtPoint.y, false);
+        mTransformCore.rotatePoint(mRBPoint, rbPoint.x, rbPoint.y, false);
+        mTransformCore.rotatePoint(mLBPoint, lbPoint.x, lbPoint.y, false);
+        //按缩放后的四个角同步TransformCore，点击判断使用它的四个角
+        mTransformCore.setCenter((mLTPoint.x + mRBPoint.x) / 2f, (mLTPoint.y + mRBPoint.y) / 2f);
+        mTransformCore.setSize(mContentWidth, mContentHeight);
+        mTransformCore.update();
 
         invalidate();
         adjustLayout();
@@ -504,136 +556,23 @@ public class TestView extends View {
 
     private void actionRotate() {
 
-        double a = distance4PointF(mCenterPoint, mPreMovePointF);
-        double b = distance4PointF(mPreMovePointF, mCurMovePointF);
-        double c = distance4PointF(mCenterPoint, mCurMovePointF);
-        double cosb = (a * a + c * c - b * b) / (2 * a * c);
-        if (cosb >= 1) {
-            cosb = 1f;
-        }
-        double radian = Math.acos(cosb);
-        float newDegree = (float) radianToDegree(radian);
-
-        //center -> proMove的向量， 我们使用PointF来实现
-        PointF centerToProMove = new PointF((mPreMovePointF.x - mCenterPoint.x), (mPreMovePointF.y - mCenterPoint.y));
-
-        //center -> curMove 的向量
-        PointF centerToCurMove = new PointF((mCurMovePointF.x - mCenterPoint.x), (mCurMovePointF.y - mCenterPoint.y));
-
-        //向量叉乘结果, 如果结果为负数， 表示为逆时针， 结果为正数表示顺时针
-        float result = centerToProMove.x * centerToCurMove.y - centerToProMove.y * centerToCurMove.x;
-
-        if (result < 0) {
-            newDegree = -newDegree;
-        }
-
+        //顺时针为正，逆时针为负
+        float newDegree = TransformCore.computeRotateDelta(mCenterPoint.x, mCenterPoint.y,
+                mPreMovePointF.x, mPreMovePointF.y, mCurMovePointF.x, mCurMovePointF.y);
         mDegree = mDegree + newDegree;
 
 
         int halfContentWidth = mContentWidth / 2;
         int halfContentHeight = mContentHeight / 2;
-        Point lt = new Point(contentCenterPoint.x - halfContentWidth, contentCenterPoint.y - halfContentHeight);
-        Point rt = new Point(contentCenterPoint.x + halfContentWidth, contentCenterPoint.y - halfContentHeight);
-        Point lb = new Point(contentCenterPoint.x - halfContentWidth, contentCenterPoint.y + halfContentHeight);
-        Point rb = new Point(contentCenterPoint.x + halfContentWidth, contentCenterPoint.y + halfContentHeight);
-        obtainRoationPoint(mLTPoint, contentCenterPoint, lt, mDegree);
-        obtainRoationPoint(mRTPoint, contentCenterPoint, rt, mDegree);
-        obtainRoationPoint(mRBPoint, contentCenterPoint, rb, mDegree);
-        obtainRoationPoint(mLBPoint, contentCenterPoint, lb, mDegree);
-
-
-//        obtainRoationPoint(mLBPoint, contentCenterPoint, mLBPoint, mDegree);
-//        obtainRoationPoint(mLTPoint, contentCenterPoint, mLTPoint, mDegree);
-//        obtainRoationPoint(mRBPoint, contentCenterPoint, mRBPoint, mDegree);
-//        obtainRoationPoint(mRTPoint, contentCenterPoint, mRTPoint, mDegree);
+        mTransformCore.setCenter(contentCenterPoint.x, contentCenterPoint.y);
+        mTransformCore.setSize(halfContentWidth * 2, halfContentHeight * 2);
+        mTransformCore.setDegree(mDegree);
+        mTransformCore.update();
+        mTransformCore.getCorners(mLTPoint, mRTPoint, mRBPoint, mLBPoint);
 
         invalidate();
     }
 
-    /**
-     * 两个点之间的距离
-     *
-     * @param pf1
-     * @param pf2
-     * @return
-     */
-    private float distance4PointF(PointF pf1, PointF pf2) {
-        float disX = pf2.x - pf1.x;
-        float disY = pf2.y - pf1.y;
-        return (float) Math.sqrt(disX * disX + disY * disY);
-    }
-
-    /**
-     * 两个点之间的距离
-     *
-     * @param pf1
-     * @param pf2
-     * @return
-     */
-    private float distance4Point(PointF pf1, Point pf2) {
-        float disX = pf2.x - pf1.x;
-        float disY = pf2.y - pf1.y;
-        return (float) Math.sqrt(disX * disX + disY * disY);
-    }
-
-    /**
-     * 两个点之间的距离
-     *
-     * @param pf1
-     * @param pf2
-     * @return
-     */
-    private float distance4Point(Point pf1, PointF pf2) {
-        float disX = pf2.x - pf1.x;
-        float disY = pf2.y - pf1.y;
-        return (float) Math.sqrt(disX * disX + disY * disY);
-    }
-
-    /**
-     * 获取旋转某个角度之后的点
-     *
-     * @param source
-     * @param degree
-     * @return
-     */
-    public void obtainRoationPoint(Point targetPoint, Point center, Point source, float degree) {
-        targetPoint.x = (int) (((source.x - center.x) * Math.cos(degreeToRadian(degree))) - ((source.y - center.y) * Math.sin(degreeToRadian(degree))) + center.x);
-        targetPoint.y = (int) (((source.x - center.x) * Math.sin(degreeToRadian(degree))) + ((source.y - center.y) * Math.cos(degreeToRadian(degree))) + center.y);
-    }
-
-    /**
-     * 获取旋转某个角度之后的点
-     *
-     * @param source
-     * @param degree
-     * @return
-     */
-    public void obtainRoationPoint(Point targetPoint, Point center, PointF source, float degree) {
-        targetPoint.x = (int) (((source.x - center.x) * Math.cos(degreeToRadian(degree))) - ((source.y - center.y) * Math.sin(degreeToRadian(degree))) + center.x);
-        targetPoint.y = (int) (((source.x - center.x) * Math.sin(degreeToRadian(degree))) + ((source.y - center.y) * Math.cos(degreeToRadian(degree))) + center.y);
-    }
-
-
-    /**
-     * 弧度换算成角度
-     *
-     * @return
-     */
-    public static double radianToDegree(double radian) {
-        return radian * 180 / Math.PI;
-    }
-
-
-    /**
-     * 角度换算成弧度
-     *
-     * @param degree
-     * @return
-     */
-    public static double degreeToRadian(double degree) {
-        return degree * Math.PI / 180;
-    }
-
     /**
      * 根据点击的位置判断是否点中控制旋转，缩放的图片， 初略的计算
      *
@@ -642,13 +581,9 @@ public class TestView extends View {
      * @return
      */
     private int JudgeStatus(float x, float y) {
-        PointF touchPoint = new PointF(x, y);
-        PointF controlPointF = new PointF(mControlPoint);
-        PointF deletePointF = new PointF(mDeletePoint);
-
         //点击的点到控制旋转，缩放点的距离
-        float distanceToControl = distance4PointF(touchPoint, controlPointF);
-        float distanceToDelete = distance4PointF(touchPoint, deletePointF);
+        float distanceToControl = TransformCore.distance(x, y, mControlPoint.x, mControlPoint.y);
+        float distanceToDelete = TransformCore.distance(x, y, mDeletePoint.x, mDeletePoint.y);
 
         //如果两者之间的距离小于 控制图标的宽度，高度的最小值，则认为点中了控制图标
         if (distanceToControl < Math.min(mDrawableWidth / 2, mDrawableHeight / 2)) {
@@ -4,15 +4,14 @@ import android.annotation.TargetApi;
 import android.app.Activity;
 import android.graphics.Bitmap;
 import android.graphics.Canvas;
+import android.graphics.Color;
 import android.graphics.Paint;
-import android.graphics.PaintFlagsDrawFilter;
 import android.graphics.Typeface;
 import android.os.Build;
 import android.text.Layout;
 import android.text.StaticLayout;
 import android.text.TextPaint;
 import android.text.TextUtils;
-import android.util.Log;
 import android.view.Gravity;
 
 public class Text2BitmapUtils {
@@ -26,6 +25,25 @@ public class Text2BitmapUtils {
      * @return
      */
     public static Bitmap getBitmap(String str, int width, int maxLineSize, int minLineSize, int fontColor, int backColor) {
+        return createBitmap(str, width, maxLineSize, minLineSize, fontColor, backColor, Bitmap.Config.ARGB_8888);
+    }
+
+    /**
+     * 生成ALPHA_8的文字遮罩，只保存覆盖率，内存为ARGB_8888的四分之一
+     * <p>
+     * 绘制时由画笔颜色或者ColorFilter着色，换颜色不需要重新生成；背景透明
+     *
+     * @param str         需要转换的文本
+     * @param width       当前需要显示区域的宽度（自动适配文字大小）
+     * @param maxLineSize 每行最大的字符数
+     * @param minLineSize 每行最少的字符数
+     * @return
+     */
+    public static Bitmap getMaskBitmap(String str, int width, int maxLineSize, int minLineSize) {
+        return createBitmap(str, width, maxLineSize, minLineSize, Color.BLACK, Color.TRANSPARENT, Bitmap.Config.ALPHA_8);
+    }
+
+    private static Bitmap createBitmap(String str, int width, int maxLineSize, int minLineSize, int fontColor, int backColor, Bitmap.Config config) {
         if (width == 0 || maxLineSize == 0) {
             return null;
         }
@@ -51,21 +69,15 @@ public class Text2BitmapUtils {
         fontSize = width * 9 / 10 / oneLineSize;
 
         /**
-         * 字体相关配置
+         * 字体相关配置，抗锯齿并对位图进行滤波处理，相同配置共用同一个画笔
          */
-        Typeface font = Typeface.create("宋体", Typeface.BOLD);
-        Paint p = new Paint();
-        p.setColor(fontColor);
-        p.setTypeface(font);
-        p.setAntiAlias(true);//去除锯齿
-        p.setFilterBitmap(true);//对位图进行滤波处理
-        p.setTextSize(fontSize);
+        Paint p = PaintRegistry.getTextPaint("宋体", Typeface.BOLD, fontSize, fontColor, true);
 
         /**
          * 先画背景
          */
         int height = (line) * fontSize + (fontSize / 3);
-        Bitmap bmp = Bitmap.createBitmap(width, height, Bitmap.Config.ARGB_8888);
+        Bitmap bmp = Bitmap.createBitmap(width, height, config);
         Canvas canvas = new Canvas(bmp);
         canvas.drawColor(backColor);
         /**
@@ -91,17 +103,52 @@ public class Text2BitmapUtils {
         return bmp;
     }
 
+    /**
+     * 在width * height的区域内用能放下的最大字号绘制文本，字号通过实际排版二分查找并缓存
+     *
+     * @param str       需要转换的文本
+     * @param width     区域宽度
+     * @param height    区域高度
+     * @param fontColor 字体颜色
+     * @param backColor 图片的背景颜色
+     * @return
+     */
+    public static Bitmap getFitBitmap(String str, int width, int height, int fontColor, int backColor) {
+        if (width <= 0 || height <= 0 || TextUtils.isEmpty(str)) {
+            return null;
+        }
+        TextPaint basePaint = PaintRegistry.getTextPaint("宋体", Typeface.BOLD, height, fontColor, true);
+        int fontSize = TextFitter.fit(str, basePaint, width, height, Layout.Alignment.ALIGN_CENTER, 1, height);
+        TextPaint p = PaintRegistry.getTextPaint("宋体", Typeface.BOLD, fontSize, fontColor, true);
+        StaticLayout staticLayout = new StaticLayout(str, p, width, Layout.Alignment.ALIGN_CENTER, 1.0f, 0.0f, false);
+
+        Bitmap bmp = Bitmap.createBitmap(width, height, Bitmap.Config.ARGB_8888);
+        Canvas canvas = new Canvas(bmp);
+        canvas.drawColor(backColor);
+        //竖直方向居中
+        canvas.translate(0, Math.max(0, (height - staticLayout.getHeight()) / 2));
+        staticLayout.draw(canvas);
+        return bmp;
+    }
+
     public static Bitmap getBitmap(Activity activity, String text, int textColor, int textAlign, int textWidth) {
-        TextPaint textPaint = new TextPaint();
-        textPaint.setColor(textColor);
-        textPaint.setTextSize(DisplayUtils.sp2px(activity, 16));
-        textPaint.setAntiAlias(true);
+        return createBitmap(activity, text, textColor, textAlign, textWidth, Bitmap.Config.ARGB_8888);
+    }
+
+    /**
+     * 生成ALPHA_8的文字遮罩，绘制时由画笔颜色或者ColorFilter着色
+     */
+    public static Bitmap getMaskBitmap(Activity activity, String text, int textAlign, int textWidth) {
+        return createBitmap(activity, text, Color.BLACK, textAlign, textWidth, Bitmap.Config.ALPHA_8);
+    }
+
+    private static Bitmap createBitmap(Activity activity, String text, int textColor, int textAlign, int textWidth, Bitmap.Config config) {
+        TextPaint textPaint = PaintRegistry.getTextPaint(null, Typeface.NORMAL, DisplayUtils.sp2px(activity, 16), textColor, true);
 
         StaticLayout staticLayout = new StaticLayout(text, textPaint, textWidth, getTextAlign(textAlign), 1.0f, 0.0f, false);
-        Bitmap bitmap = Bitmap.createBitmap(staticLayout.getWidth(), staticLayout.getHeight(), Bitmap.Config.ARGB_8888);
-        Log.i("test3", "getBitmap: getWidth>>" + staticLayout.getWidth() + " getHeight>>" + staticLayout.getHeight() + " " + bitmap.getWidth() + " " + bitmap.getHeight());
+        Bitmap bitmap = Bitmap.createBitmap(staticLayout.getWidth(), staticLayout.getHeight(), config);
         Canvas canvas = new Canvas(bitmap);
-        canvas.setDrawFilter(new PaintFlagsDrawFilter(0, Paint.ANTI_ALIAS_FLAG | Paint.FILTER_BITMAP_FLAG));
+        canvas.setDrawFilter(PaintRegistry.ANTI_ALIAS_DRAW_FILTER);
         staticLayout.draw(canvas);
         return bitmap;
     }
@@ -0,0 +1,149 @@
+package com.ccsf.snappingview;
+
+import android.graphics.Typeface;
+import android.text.Layout;
+import android.text.StaticLayout;
+import android.text.TextPaint;
+import android.text.TextUtils;
+import android.util.LruCache;
+
+/**
+ * 自动适配字号：二分查找能完整放进指定区域的最大字号，用StaticLayout实际排版测量
+ * <p>
+ * 结果按文本、区域大小、字体和对齐方式缓存，同一个标签重复生成时只需要一次查找。线程安全
+ */
+public class TextFitter {
+
+    private static final int MAX_CACHE_COUNT = 256;
+
+    /**
+     * 只在读写缓存时持有锁，二分查找在锁外进行，不同线程的测量互不阻塞
+     */
+    private static final LruCache<FitKey, Integer> sCache = new LruCache<>(MAX_CACHE_COUNT);
+
+    private TextFitter() {
+    }
+
+    /**
+     * 计算能放进boxWidth * boxHeight的最大字号
+     *
+     * @param text      文本
+     * @param paint     提供字体、样式等设置的画笔，不会被修改
+     * @param boxWidth  区域宽度，也是排版宽度
+     * @param boxHeight 区域高度
+     * @param align     对齐方式
+     * @param minSize   最小字号，放不下时也返回它
+     * @param maxSize   最大字号
+     * @return 字号
+     */
+    public static int fit(CharSequence text, TextPaint paint, int boxWidth, int boxHeight,
+                          Layout.Alignment align, int minSize, int maxSize) {
+        if (TextUtils.isEmpty(text) || boxWidth <= 0 || boxHeight <= 0) {
+            return minSize;
+        }
+        //text可能是可变的CharSequence，缓存的key保存它的String副本
+        FitKey key = new FitKey();
+        key.set(text.toString(), paint.getTypeface(), paint.getFlags(), boxWidth, boxHeight, align, minSize, maxSize);
+        Integer cached;
+        synchronized (sCache) {
+            cached = sCache.get(key);
+        }
+        if (cached != null) {
+            return cached;
+        }
+        //两个线程同时查找同一个key时各自计算，结果相同，后放入的覆盖先放入的
+        TextPaint measurePaint = new TextPaint(paint);
+        int low = minSize;
+        int high = maxSize;
+        int result = minSize;
+        while (low <= high) {
+            int mid = (low + high) >>> 1;
+            if (isFit(text, measurePaint, mid, boxWidth, boxHeight, align)) {
+                result = mid;
+                low = mid + 1;
+            } else {
+                high = mid - 1;
+            }
+        }
+        synchronized (sCache) {
+            sCache.put(key, result);
+        }
+        return result;
+    }
+
+    private static boolean isFit(CharSequence text, TextPaint paint, int textSize, int boxWidth, int boxHeight, Layout.Alignment align) {
+        paint.setTextSize(textSize);
+        StaticLayout layout = new StaticLayout(text, paint, boxWidth, align, 1.0f, 0.0f, false);
+        if (layout.getHeight() > boxHeight) {
+            return false;
+        }
+        //单个字符比区域还宽时StaticLayout也会强制换行，需要单独检查
+        for (int i = 0; i < layout.getLineCount(); i++) {
+            if (layout.getLineWidth(i) > boxWidth) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    public static void clear() {
+        synchronized (sCache) {
+            sCache.evictAll();
+        }
+    }
+
+    private static class FitKey {
+        String text;
+        Typeface typeface;
+        int flags;
+        int boxWidth;
+        int boxHeight;
+        Layout.Alignment align;
+        int minSize;
+        int maxSize;
+
+        void set(String text, Typeface typeface, int flags, int boxWidth, int boxHeight,
+                 Layout.Alignment align, int minSize, int maxSize) {
+            this.text = text;
+            this.typeface = typeface;
+            this.flags = flags;
+            this.boxWidth = boxWidth;
+            this.boxHeight = boxHeight;
+            this.align = align;
+            this.minSize = minSize;
+            this.maxSize = maxSize;
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (this == o) {
+                return true;
+            }
+            if (!(o instanceof FitKey)) {
+                return false;
+            }
+            FitKey other = (FitKey) o;
+            return boxWidth == other.boxWidth
+                    && boxHeight == other.boxHeight
+                    && flags == other.flags
+                    && minSize == other.minSize
+                    && maxSize == other.maxSize
+                    && align == other.align
+                    && typeface == other.typeface
+                    && TextUtils.equals(text, other.text);
+        }
+
+        @Override
+        public int hashCode() {
+            int result = text.hashCode();
+            result = 31 * result + (typeface == null ? 0 : typeface.hashCode());
+            result = 31 * result + flags;
+            result = 31 * result + boxWidth;
+            result = 31 * result + boxHeight;
+            result = 31 * result + (align == null ? 0 : align.hashCode());
+            result = 31 * result + minSize;
+            result = 31 * result + maxSize;
+            return result;
+        }
+    }
+}
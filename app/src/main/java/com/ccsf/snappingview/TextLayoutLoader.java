@@ -0,0 +1,88 @@
+package com.ccsf.snappingview;
+
+import android.annotation.TargetApi;
+import android.os.Build;
+import android.os.Handler;
+import android.os.Looper;
+import android.text.Layout;
+import android.text.PrecomputedText;
+import android.text.StaticLayout;
+import android.text.TextPaint;
+
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+/**
+ * 在后台线程测量和排版文字，完成后回到主线程交给调用方
+ * <p>
+ * Android P及以上先生成PrecomputedText再排版，其他版本直接在后台线程创建StaticLayout
+ */
+public class TextLayoutLoader {
+
+    private static final ExecutorService sExecutor = Executors.newSingleThreadExecutor();
+    private static final Handler sMainHandler = new Handler(Looper.getMainLooper());
+
+    private TextLayoutLoader() {
+    }
+
+    /**
+     * 异步排版
+     *
+     * @param text     文本
+     * @param paint    画笔，会复制一份在后台使用，之后修改原画笔不影响排版结果
+     * @param width    排版宽度，小于0时按文字宽度排版
+     * @param align    对齐方式
+     * @param callback 在主线程中回调
+     * @return 可以用来取消的Future
+     */
+    public static Future<?> load(final CharSequence text, TextPaint paint, final int width,
+                                 final Layout.Alignment align, final Callback callback) {
+        if (text == null || callback == null) {
+            throw new NullPointerException("text和callback不能为空");
+        }
+        final TextPaint workerPaint = new TextPaint(paint);
+        return sExecutor.submit(new Runnable() {
+            @Override
+            public void run() {
+                int layoutWidth = width >= 0 ? width : (int) workerPaint.measureText(text, 0, text.length());
+                final StaticLayout layout;
+                if (Build.VERSION.SDK_INT >= Build.VERSION_CODES.P) {
+                    layout = buildPrecomputed(text, workerPaint, layoutWidth, align);
+                } else {
+                    layout = new StaticLayout(text, workerPaint, layoutWidth, align, 1.0f, 0.0f, false);
+                }
+                sMainHandler.post(new Runnable() {
+                    @Override
+                    public void run() {
+                        callback.onLayoutReady(layout);
+                    }
+                });
+            }
+        });
+    }
+
+    /**
+     * 换行方式和直接new StaticLayout时保持一致，PrecomputedText的测量结果才能被复用
+     */
+    @TargetApi(Build.VERSION_CODES.P)
+    private static StaticLayout buildPrecomputed(CharSequence text, TextPaint paint, int width, Layout.Alignment align) {
+        PrecomputedText.Params params = new PrecomputedText.Params.Builder(paint)
+                .setBreakStrategy(Layout.BREAK_STRATEGY_SIMPLE)
+                .setHyphenationFrequency(Layout.HYPHENATION_FREQUENCY_NONE)
+                .build();
+        PrecomputedText precomputed = PrecomputedText.create(text, params);
+        return StaticLayout.Builder.obtain(precomputed, 0, precomputed.length(), paint, width)
+                .setAlignment(align)
+                .setBreakStrategy(params.getBreakStrategy())
+                .setHyphenationFrequency(params.getHyphenationFrequency())
+                .setTextDirection(params.getTextDirection())
+                .setLineSpacing(0.0f, 1.0f)
+                .setIncludePad(false)
+                .build();
+    }
+
+    public interface Callback {
+        void onLayoutReady(StaticLayout layout);
+    }
+}
@@ -0,0 +1,184 @@
+package com.ccsf.snappingview;
+
+import android.graphics.Bitmap;
+import android.graphics.Canvas;
+import android.graphics.Typeface;
+import android.text.Layout;
+import android.text.StaticLayout;
+import android.text.TextPaint;
+import android.text.TextUtils;
+import android.util.LruCache;
+
+/**
+ * 缩放手势中按字号档位缓存的文字栅格
+ * <p>
+ * 字号按固定比例（默认约5%）分档，每一档只排版和栅格化一次，手势中绘制最接近的一档再缩放剩余的比例。
+ * 按占用的字节数做LRU淘汰。栅格的边长和字节数有上限，超过上限的字号使用上限内最大的一档，剩余的比例由绘制时的矩阵放大
+ */
+public class TextRasterCache {
+
+    public static final float DEFAULT_BUCKET_STEP = 1.05f;
+    public static final int DEFAULT_MAX_BYTES = 8 * 1024 * 1024;
+    /**
+     * 栅格的最大边长
+     */
+    public static final int MAX_RASTER_EDGE = 2048;
+
+    private final double mLogStep;
+    private final LruCache<Integer, Entry> mCache;
+    private final int mMaxBytes;
+    /**
+     * 单个栅格的最大字节数，保证缓存中至少能放下两档
+     */
+    private final int mMaxEntryBytes;
+    /**
+     * 栅格不超过上限的最大档位，超过上限之后才知道，setBase时重置
+     */
+    private int mMaxBucket = Integer.MAX_VALUE;
+    /**
+     * 上一次返回的一档，档位不变时直接返回，不查缓存也不重新栅格化
+     */
+    private Entry mCurrent;
+
+    /**
+     * 栅格化的基准：字号为mRefTextSize时排版宽度为mRefWidth，其他档位按字号等比例缩放宽度
+     */
+    private CharSequence mContent;
+    private TextPaint mPaint;
+    private int mRefWidth;
+    private int mRefTextSize;
+    private Layout.Alignment mAlign;
+
+    public TextRasterCache() {
+        this(DEFAULT_BUCKET_STEP, DEFAULT_MAX_BYTES);
+    }
+
+    /**
+     * @param bucketStep 相邻两档字号的比例，大于1
+     * @param maxBytes   缓存占用的最大字节数
+     */
+    public TextRasterCache(float bucketStep, int maxBytes) {
+        if (bucketStep <= 1f) {
+            throw new IllegalArgumentException("bucketStep必须大于1");
+        }
+        mLogStep = Math.log(bucketStep);
+        mMaxBytes = maxBytes;
+        mMaxEntryBytes = maxBytes / 2;
+        mCache = new LruCache<Integer, Entry>(maxBytes) {
+            @Override
+            protected int sizeOf(Integer key, Entry value) {
+                return value.bitmap.getByteCount();
+            }
+        };
+    }
+
+    /**
+     * 设置栅格化的内容，和上一次不同时清空缓存
+     *
+     * @param content     文本内容
+     * @param paint       画笔，会复制一份
+     * @param refWidth    字号为refTextSize时的排版宽度
+     * @param refTextSize 基准字号
+     * @param align       对齐方式
+     */
+    public void setBase(CharSequence content, TextPaint paint, int refWidth, int refTextSize, Layout.Alignment align) {
+        if (mPaint != null && mRefWidth == refWidth && mRefTextSize == refTextSize && mAlign == align
+                && isSamePaint(paint) && TextUtils.equals(mContent, content)) {
+            return;
+        }
+        clear();
+        mContent = content;
+        mPaint = new TextPaint(paint);
+        mRefWidth = refWidth;
+        mRefTextSize = refTextSize;
+        mAlign = align;
+    }
+
+    private boolean isSamePaint(TextPaint paint) {
+        Typeface typeface = paint.getTypeface();
+        return mPaint.getTypeface() == typeface
+                && mPaint.getFlags() == paint.getFlags()
+                && mPaint.getColor() == paint.getColor()
+                && mPaint.getTextScaleX() == paint.getTextScaleX()
+                && mPaint.getTextSkewX() == paint.getTextSkewX();
+    }
+
+    /**
+     * 获取最接近textSize的一档，没有缓存时排版并栅格化。超过栅格上限时返回上限内最大的一档，
+     * 返回的textSize会小于需要的字号
+     *
+     * @param textSize 当前字号
+     * @return
+     */
+    public Entry obtain(float textSize) {
+        if (mPaint == null) {
+            throw new IllegalStateException("需要先调用setBase");
+        }
+        int bucket = (int) Math.round(Math.log(textSize / mRefTextSize) / mLogStep);
+        while (true) {
+            bucket = Math.min(bucket, mMaxBucket);
+            if (mCurrent != null && mCurrent.bucket == bucket) {
+                return mCurrent;
+            }
+            Entry entry = mCache.get(bucket);
+            if (entry == null) {
+                entry = rasterize(bucket);
+                if (entry == null) {
+                    //超过上限，mMaxBucket已经降低，按新的上限重新获取
+                    continue;
+                }
+                //LruCache放入超过maxBytes的值会立即淘汰，这样的一档只作为当前档保留
+                if (entry.bitmap.getByteCount() <= mMaxBytes) {
+                    mCache.put(bucket, entry);
+                }
+            }
+            mCurrent = entry;
+            return entry;
+        }
+    }
+
+    /**
+     * 排版并栅格化一档，栅格超过上限时不创建Bitmap，降低mMaxBucket后返回null
+     */
+    private Entry rasterize(int bucket) {
+        int bucketTextSize = Math.max(1, (int) Math.round(mRefTextSize * Math.exp(bucket * mLogStep)));
+        int width = Math.max(1, Math.round((float) mRefWidth * bucketTextSize / mRefTextSize));
+        mPaint.setTextSize(bucketTextSize);
+        StaticLayout layout = new StaticLayout(mContent, mPaint, width, mAlign, 1.0f, 0.0f, false);
+        int bitmapWidth = Math.max(1, layout.getWidth());
+        int bitmapHeight = Math.max(1, layout.getHeight());
+        float fraction = Math.min(1f, Math.min((float) MAX_RASTER_EDGE / bitmapWidth, (float) MAX_RASTER_EDGE / bitmapHeight));
+        fraction = Math.min(fraction, (float) Math.sqrt((double) mMaxEntryBytes / 4 / bitmapWidth / bitmapHeight));
+        //字号已经是1时无法再缩小
+        if (fraction < 1f && bucketTextSize > 1) {
+            //宽度和字号等比例，高度近似等比例，估算的一档仍然超过时下一次再降低
+            int maxBucket = (int) Math.floor(Math.log(bucketTextSize * fraction / mRefTextSize) / mLogStep);
+            mMaxBucket = Math.min(maxBucket, bucket - 1);
+            return null;
+        }
+        Bitmap bitmap = Bitmap.createBitmap(bitmapWidth, bitmapHeight, Bitmap.Config.ARGB_8888);
+        layout.draw(new Canvas(bitmap));
+        return new Entry(bitmap, bucketTextSize, bucket);
+    }
+
+    public void clear() {
+        mCache.evictAll();
+        mCurrent = null;
+        mMaxBucket = Integer.MAX_VALUE;
+    }
+
+    public static class Entry {
+        public final Bitmap bitmap;
+        /**
+         * 这一档实际栅格化时的字号
+         */
+        public final int textSize;
+        final int bucket;
+
+        Entry(Bitmap bitmap, int textSize, int bucket) {
+            this.bitmap = bitmap;
+            this.textSize = textSize;
+            this.bucket = bucket;
+        }
+    }
+}
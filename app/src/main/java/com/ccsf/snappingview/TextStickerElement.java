@@ -0,0 +1,107 @@
+package com.ccsf.snappingview;
+
+import android.graphics.Canvas;
+import android.graphics.Color;
+import android.text.Layout;
+import android.text.StaticLayout;
+import android.text.TextPaint;
+
+/**
+ * 文字贴纸元素
+ */
+public class TextStickerElement extends StickerElement {
+
+    public static final int DEFAULT_TEXT_SIZE = 34;
+
+    private String content;
+    private TextPaint textPaint;
+    private Layout.Alignment textAlign = Layout.Alignment.ALIGN_CENTER;
+    private StaticLayoutCache mLayoutCache = new StaticLayoutCache();
+    private StaticLayout staticLayout;
+
+    /**
+     * 固定的排版宽度，小于0时按文字宽度排版
+     */
+    private int mLayoutWidth = -1;
+
+    public TextStickerElement(String content) {
+        this.content = content;
+        textPaint = new TextPaint();
+        textPaint.setColor(Color.BLACK);
+        textPaint.setTextSize(DEFAULT_TEXT_SIZE);
+        textPaint.setAntiAlias(true);
+        relayout();
+    }
+
+    /**
+     * 按已有的画笔和排版宽度创建，画笔会被复制，之后修改原画笔不影响这个元素
+     *
+     * @param content     文本内容
+     * @param paint       画笔
+     * @param layoutWidth 排版宽度，小于0时按文字宽度排版
+     * @param align       对齐方式
+     */
+    public TextStickerElement(String content, TextPaint paint, int layoutWidth, Layout.Alignment align) {
+        this.content = content;
+        this.textPaint = new TextPaint(paint);
+        this.mLayoutWidth = layoutWidth;
+        this.textAlign = align;
+        relayout();
+    }
+
+    public String getText() {
+        return content;
+    }
+
+    public void setText(String content) {
+        this.content = content;
+        relayout();
+    }
+
+    public void setTextColor(int color) {
+        //颜色不影响排版
+        textPaint.setColor(color);
+    }
+
+    public int getTextColor() {
+        return textPaint.getColor();
+    }
+
+    public void setTextAlign(Layout.Alignment textAlign) {
+        this.textAlign = textAlign;
+        relayout();
+    }
+
+    public Layout.Alignment getTextAlign() {
+        return textAlign;
+    }
+
+    public TextPaint getTextPaint() {
+        return textPaint;
+    }
+
+    public StaticLayout getLayout() {
+        return staticLayout;
+    }
+
+    private void relayout() {
+        int contentWidth = mLayoutWidth >= 0 ? mLayoutWidth : (int) textPaint.measureText(content);
+        staticLayout = mLayoutCache.obtain(content, textPaint, contentWidth, textAlign);
+        updateContentSize();
+    }
+
+    @Override
+    public int getContentWidth() {
+        return staticLayout.getWidth();
+    }
+
+    @Override
+    public int getContentHeight() {
+        return staticLayout.getHeight();
+    }
+
+    @Override
+    protected void drawContent(Canvas canvas) {
+        staticLayout.draw(canvas);
+    }
+}
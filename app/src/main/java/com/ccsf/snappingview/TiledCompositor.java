@@ -0,0 +1,265 @@
+package com.ccsf.snappingview;
+
+import android.graphics.Bitmap;
+import android.graphics.BitmapFactory;
+import android.graphics.BitmapRegionDecoder;
+import android.graphics.Canvas;
+import android.graphics.Color;
+import android.graphics.Rect;
+import android.graphics.RectF;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * 把贴纸元素分块合成到大尺寸底图上，内存占用只和分块大小有关
+ * <p>
+ * 底图通过BitmapRegionDecoder按块解码并复用同一个Bitmap，每一块只绘制变换后外接矩形与该块相交的元素，
+ * 元素的绘制和StickerExporter一样使用TransformCore的矩阵。可以在子线程中执行，合成期间不要修改元素；
+ * 每次合成开始时按元素当前的变换重新计算外接矩形，两次合成之间可以移动、旋转或缩放元素
+ */
+public class TiledCompositor {
+
+    public static final int DEFAULT_TILE_SIZE = 512;
+
+    private final BitmapRegionDecoder mDecoder;
+    private final int mPageWidth, mPageHeight;
+    private final int mTileSize;
+    private int mBackgroundColor = Color.WHITE;
+
+    /**
+     * 元素坐标到底图坐标：page = element * mElementScale + (mElementDx, mElementDy)
+     */
+    private float mElementScale = 1f;
+    private float mElementDx, mElementDy;
+
+    private final List<StickerElement> mElements = new ArrayList<>();
+    /**
+     * 每个元素在底图坐标中的外接矩形，和mElements一一对应
+     */
+    private final List<RectF> mPageBounds = new ArrayList<>();
+
+    private final List<StickerElement> mRowElements = new ArrayList<>();
+    private final List<RectF> mRowBounds = new ArrayList<>();
+    private final BitmapFactory.Options mOptions = new BitmapFactory.Options();
+    private final Canvas mCanvas = new Canvas();
+    private final Rect mTileRect = new Rect();
+
+    /**
+     * 以解码器中的图片作为底图
+     *
+     * @param decoder  底图解码器，由调用方负责recycle
+     * @param tileSize 分块边长
+     */
+    public TiledCompositor(BitmapRegionDecoder decoder, int tileSize) {
+        if (decoder == null) {
+            throw new NullPointerException("decoder不能为空");
+        }
+        mDecoder = decoder;
+        mPageWidth = decoder.getWidth();
+        mPageHeight = decoder.getHeight();
+        mTileSize = checkTileSize(tileSize);
+    }
+
+    /**
+     * 纯色底图
+     *
+     * @param pageWidth  底图宽度
+     * @param pageHeight 底图高度
+     * @param tileSize   分块边长
+     */
+    public TiledCompositor(int pageWidth, int pageHeight, int tileSize) {
+        mDecoder = null;
+        mPageWidth = pageWidth;
+        mPageHeight = pageHeight;
+        mTileSize = checkTileSize(tileSize);
+    }
+
+    private static int checkTileSize(int tileSize) {
+        if (tileSize <= 0) {
+            throw new IllegalArgumentException("tileSize必须大于0");
+        }
+        return tileSize;
+    }
+
+    public int getPageWidth() {
+        return mPageWidth;
+    }
+
+    public int getPageHeight() {
+        return mPageHeight;
+    }
+
+    public int getTileSize() {
+        return mTileSize;
+    }
+
+    /**
+     * 没有解码器时底图的颜色
+     */
+    public void setBackgroundColor(int color) {
+        this.mBackgroundColor = color;
+    }
+
+    /**
+     * 设置元素坐标到底图坐标的映射，例如元素摆放在按比例缩小显示的底图上
+     *
+     * @param scale 缩放比例
+     * @param dx    缩放后的水平偏移
+     * @param dy    缩放后的竖直偏移
+     */
+    public void setElementToPage(float scale, float dx, float dy) {
+        mElementScale = scale;
+        mElementDx = dx;
+        mElementDy = dy;
+    }
+
+    /**
+     * 添加元素，越后添加越在上层
+     */
+    public void addElement(StickerElement element) {
+        if (element == null) {
+            throw new NullPointerException("element不能为空");
+        }
+        mElements.add(element);
+    }
+
+    public void addElements(List<StickerElement> elements) {
+        for (int i = 0; i < elements.size(); i++) {
+            addElement(elements.get(i));
+        }
+    }
+
+    public void clearElements() {
+        mElements.clear();
+    }
+
+    /**
+     * 元素是外部持有的，变换可能在两次合成之间改变，每次合成都重新计算
+     */
+    private void updateBounds() {
+        while (mPageBounds.size() < mElements.size()) {
+            mPageBounds.add(new RectF());
+        }
+        for (int i = 0; i < mElements.size(); i++) {
+            TransformCore transform = mElements.get(i).getTransform();
+            transform.update();
+            RectF bounds = mPageBounds.get(i);
+            transform.getBounds(bounds);
+            bounds.set(bounds.left * mElementScale + mElementDx, bounds.top * mElementScale + mElementDy,
+                    bounds.right * mElementScale + mElementDx, bounds.bottom * mElementScale + mElementDy);
+        }
+    }
+
+    /**
+     * 按行依次合成所有分块并交给sink
+     *
+     * @param sink 接收每一块的结果
+     * @throws IOException sink抛出的异常
+     */
+    public void composite(TileSink sink) throws IOException {
+        updateBounds();
+        Bitmap tile = null;
+        for (int top = 0; top < mPageHeight; top += mTileSize) {
+            int bottom = Math.min(top + mTileSize, mPageHeight);
+            collectRow(top, bottom);
+            for (int left = 0; left < mPageWidth; left += mTileSize) {
+                mTileRect.set(left, top, Math.min(left + mTileSize, mPageWidth), bottom);
+                tile = renderTileFromRow(mTileRect, tile);
+                sink.onTile(tile, mTileRect.left, mTileRect.top);
+            }
+        }
+    }
+
+    /**
+     * 合成底图中的一块
+     *
+     * @param tileRect 底图坐标中的范围
+     * @param reuse    可以复用的Bitmap，可以为null
+     * @return 合成结果，可能就是reuse
+     */
+    public Bitmap renderTile(Rect tileRect, Bitmap reuse) {
+        updateBounds();
+        collectRow(tileRect.top, tileRect.bottom);
+        return renderTileFromRow(tileRect, reuse);
+    }
+
+    /**
+     * 先找出与这一行相交的元素，同一行的每一块只需要在这些元素中筛选
+     */
+    private void collectRow(int top, int bottom) {
+        mRowElements.clear();
+        mRowBounds.clear();
+        for (int i = 0; i < mElements.size(); i++) {
+            RectF bounds = mPageBounds.get(i);
+            if (bounds.bottom > top && bounds.top < bottom) {
+                mRowElements.add(mElements.get(i));
+                mRowBounds.add(bounds);
+            }
+        }
+    }
+
+    private Bitmap renderTileFromRow(Rect tileRect, Bitmap reuse) {
+        Bitmap tile = decodeTile(tileRect, reuse);
+        mCanvas.setBitmap(tile);
+        int saveCount = mCanvas.save();
+        mCanvas.translate(-tileRect.left, -tileRect.top);
+        mCanvas.translate(mElementDx, mElementDy);
+        mCanvas.scale(mElementScale, mElementScale);
+        for (int i = 0; i < mRowElements.size(); i++) {
+            RectF bounds = mRowBounds.get(i);
+            if (bounds.right > tileRect.left && bounds.left < tileRect.right) {
+                mRowElements.get(i).draw(mCanvas);
+            }
+        }
+        mCanvas.restoreToCount(saveCount);
+        mCanvas.setBitmap(null);
+        return tile;
+    }
+
+    /**
+     * 解码底图中的一块，尽量复用reuse的内存
+     */
+    private Bitmap decodeTile(Rect tileRect, Bitmap reuse) {
+        int width = tileRect.width();
+        int height = tileRect.height();
+        boolean canReuse = reuse != null && !reuse.isRecycled() && reuse.isMutable()
+                && reuse.getAllocationByteCount() >= width * height * 4;
+        if (canReuse && (reuse.getWidth() != width || reuse.getHeight() != height
+                || reuse.getConfig() != Bitmap.Config.ARGB_8888)) {
+            //边缘的块比较小，调整尺寸后继续使用同一块内存
+            reuse.reconfigure(width, height, Bitmap.Config.ARGB_8888);
+        }
+        if (mDecoder == null) {
+            Bitmap tile = canReuse ? reuse : Bitmap.createBitmap(width, height, Bitmap.Config.ARGB_8888);
+            tile.eraseColor(mBackgroundColor);
+            return tile;
+        }
+        mOptions.inPreferredConfig = Bitmap.Config.ARGB_8888;
+        mOptions.inMutable = true;
+        mOptions.inBitmap = canReuse ? reuse : null;
+        Bitmap tile = mDecoder.decodeRegion(tileRect, mOptions);
+        mOptions.inBitmap = null;
+        if (!tile.isMutable()) {
+            //解码器没有按要求返回可变的Bitmap时复制一份才能在上面绘制
+            Bitmap copy = tile.copy(Bitmap.Config.ARGB_8888, true);
+            tile.recycle();
+            tile = copy;
+        }
+        return tile;
+    }
+
+    /**
+     * 接收合成好的分块，返回后该Bitmap会被下一块复用
+     */
+    public interface TileSink {
+        /**
+         * @param tile 合成结果
+         * @param left 在底图中的横坐标
+         * @param top  在底图中的纵坐标
+         * @throws IOException
+         */
+        void onTile(Bitmap tile, int left, int top) throws IOException;
+    }
+}
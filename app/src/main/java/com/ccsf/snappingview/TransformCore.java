@@ -0,0 +1,243 @@
+package com.ccsf.snappingview;
+
+import android.graphics.Matrix;
+import android.graphics.Point;
+import android.graphics.RectF;
+
+/**
+ * 贴纸共用的变换核心，用float保存中心点、缩放和旋转角度
+ * <p>
+ * 角度变化时只计算一次sin/cos，四个角通过一次Matrix.mapPoints得到，顺序为左上、右上、右下、左下
+ */
+public class TransformCore {
+
+    /**
+     * 内容中心点坐标
+     */
+    private float mCenterX, mCenterY;
+
+    /**
+     * 未缩放的内容宽高
+     */
+    private float mWidth, mHeight;
+
+    private float mScale = 1f;
+    private float mDegree = 0f;
+    private float mSin = 0f;
+    private float mCos = 1f;
+
+    /**
+     * 把内容坐标（左上角为原点）映射到目标坐标的矩阵
+     */
+    private final Matrix mMatrix = new Matrix();
+    private final float[] mSrc = new float[8];
+    private final float[] mCorners = new float[8];
+    private boolean isDirty = true;
+
+    public void setCenter(float x, float y) {
+        if (mCenterX != x || mCenterY != y) {
+            mCenterX = x;
+            mCenterY = y;
+            isDirty = true;
+        }
+    }
+
+    public void setSize(float width, float height) {
+        if (mWidth != width || mHeight != height) {
+            mWidth = width;
+            mHeight = height;
+            isDirty = true;
+        }
+    }
+
+    public void setScale(float scale) {
+        if (mScale != scale) {
+            mScale = scale;
+            isDirty = true;
+        }
+    }
+
+    /**
+     * 设置旋转角度，sin/cos只在这里计算一次
+     *
+     * @param degree
+     */
+    public void setDegree(float degree) {
+        if (mDegree != degree) {
+            mDegree = degree;
+            double radian = Math.toRadians(degree);
+            mSin = (float) Math.sin(radian);
+            mCos = (float) Math.cos(radian);
+            isDirty = true;
+        }
+    }
+
+    /**
+     * 复制另一个变换的全部状态
+     */
+    public void set(TransformCore other) {
+        setCenter(other.mCenterX, other.mCenterY);
+        setSize(other.mWidth, other.mHeight);
+        setScale(other.mScale);
+        if (mDegree != other.mDegree) {
+            mDegree = other.mDegree;
+            mSin = other.mSin;
+            mCos = other.mCos;
+            isDirty = true;
+        }
+    }
+
+    public float getCenterX() {
+        return mCenterX;
+    }
+
+    public float getCenterY() {
+        return mCenterY;
+    }
+
+    public float getWidth() {
+        return mWidth;
+    }
+
+    public float getHeight() {
+        return mHeight;
+    }
+
+    public float getScale() {
+        return mScale;
+    }
+
+    public float getDegree() {
+        return mDegree;
+    }
+
+    /**
+     * 重新计算矩阵和四个角，状态没有变化时直接返回
+     */
+    public void update() {
+        if (!isDirty) {
+            return;
+        }
+        mMatrix.setSinCos(mSin, mCos);
+        mMatrix.preScale(mScale, mScale);
+        mMatrix.preTranslate(-mWidth / 2, -mHeight / 2);
+        mMatrix.postTranslate(mCenterX, mCenterY);
+
+        mSrc[0] = 0;
+        mSrc[1] = 0;
+        mSrc[2] = mWidth;
+        mSrc[3] = 0;
+        mSrc[4] = mWidth;
+        mSrc[5] = mHeight;
+        mSrc[6] = 0;
+        mSrc[7] = mHeight;
+        mMatrix.mapPoints(mCorners, mSrc);
+        isDirty = false;
+    }
+
+    /**
+     * 内容坐标到目标坐标的矩阵，调用前需要update
+     */
+    public Matrix getMatrix() {
+        return mMatrix;
+    }
+
+    /**
+     * 四个角的坐标[ltX, ltY, rtX, rtY, rbX, rbY, lbX, lbY]，调用前需要update
+     */
+    public float[] getCorners() {
+        return mCorners;
+    }
+
+    /**
+     * 把四个角的坐标写入整型点中
+     */
+    public void getCorners(Point lt, Point rt, Point rb, Point lb) {
+        lt.set(Math.round(mCorners[0]), Math.round(mCorners[1]));
+        rt.set(Math.round(mCorners[2]), Math.round(mCorners[3]));
+        rb.set(Math.round(mCorners[4]), Math.round(mCorners[5]));
+        lb.set(Math.round(mCorners[6]), Math.round(mCorners[7]));
+    }
+
+    /**
+     * 旋转后四个角的外接矩形
+     */
+    public void getBounds(RectF out) {
+        float[] c = mCorners;
+        out.set(Math.min(Math.min(c[0], c[2]), Math.min(c[4], c[6])),
+                Math.min(Math.min(c[1], c[3]), Math.min(c[5], c[7])),
+                Math.max(Math.max(c[0], c[2]), Math.max(c[4], c[6])),
+                Math.max(Math.max(c[1], c[3]), Math.max(c[5], c[7])));
+    }
+
+    /**
+     * 点是否落在旋转后的内容范围内
+     */
+    public boolean contains(float x, float y) {
+        return isPolygonContainsPoint(x, y, mCorners);
+    }
+
+    /**
+     * 把点(x, y)绕中心点旋转当前角度，inverse为true时反向旋转，结果写入target
+     */
+    public void rotatePoint(Point target, float x, float y, boolean inverse) {
+        float sin = inverse ? -mSin : mSin;
+        float dx = x - mCenterX;
+        float dy = y - mCenterY;
+        target.x = Math.round(dx * mCos - dy * sin + mCenterX);
+        target.y = Math.round(dx * sin + dy * mCos + mCenterY);
+    }
+
+    /**
+     * 两个点之间的距离
+     */
+    public static float distance(float x1, float y1, float x2, float y2) {
+        float disX = x2 - x1;
+        float disY = y2 - y1;
+        return (float) Math.sqrt(disX * disX + disY * disY);
+    }
+
+    /**
+     * 计算触摸点从pre移动到cur时绕中心点转过的角度，顺时针为正
+     */
+    public static float computeRotateDelta(float centerX, float centerY, float preX, float preY, float curX, float curY) {
+        float preDx = preX - centerX;
+        float preDy = preY - centerY;
+        float curDx = curX - centerX;
+        float curDy = curY - centerY;
+        //叉乘决定方向，点乘决定夹角大小
+        float cross = preDx * curDy - preDy * curDx;
+        float dot = preDx * curDx + preDy * curDy;
+        return (float) Math.toDegrees(Math.atan2(cross, dot));
+    }
+
+    /**
+     * 判断点是否在多边形内，quad为[x0, y0, x1, y1, ...]
+     */
+    public static boolean isPolygonContainsPoint(float x, float y, float[] quad) {
+        int nCross = 0;
+        int count = quad.length / 2;
+        for (int i = 0; i < count; i++) {
+            float p1x = quad[i * 2];
+            float p1y = quad[i * 2 + 1];
+            int next = (i + 1) % count;
+            float p2x = quad[next * 2];
+            float p2y = quad[next * 2 + 1];
+            // p1p2是水平线段,要么没有交点,要么有无限个交点
+            if (p1y == p2y)
+                continue;
+            // point 在p1p2 底部 --> 无交点
+            if (y < Math.min(p1y, p2y))
+                continue;
+            // point 在p1p2 顶部 --> 无交点
+            if (y >= Math.max(p1y, p2y))
+                continue;
+            // 求解 point点水平线与当前p1p2边的交点的 X 坐标
+            float crossX = (y - p1y) * (p2x - p1x) / (p2y - p1y) + p1x;
+            if (crossX > x)
+                nCross++; // 只统计单边交点
+        }
+        // 单边交点为偶数，点在多边形之外
+        return (nCross % 2 == 1);
+    }
+}
@@ -0,0 +1,221 @@
+package com.ccsf.snappingview;
+
+/**
+ * 撤销、重做记录，保存在固定容量的环形缓冲区中
+ * <p>
+ * 变换记录只把前后两组中心点、角度和缩放写进一个float数组，文字等内容变化只保存前后两个不可变对象的引用，
+ * 记录时不创建对象。超过容量时覆盖最早的记录；撤销、重做只是移动游标并回调一次，不需要重新计算或栅格化
+ *
+ * @param <T> 被修改的对象，例如StickerElement
+ */
+public class TransformHistory<T> {
+
+    public static final int DEFAULT_CAPACITY = 100;
+
+    private static final int TYPE_TRANSFORM = 0;
+    private static final int TYPE_CONTENT = 1;
+    private static final int TYPE_ADD = 2;
+    private static final int TYPE_REMOVE = 3;
+
+    /**
+     * 每条记录占用的float个数：修改前和修改后的中心点x、y，角度，缩放
+     */
+    private static final int FLOATS_PER_RECORD = 8;
+
+    private final Callback<T> mCallback;
+    private final int mCapacity;
+    private final int[] mTypes;
+    private final Object[] mTargets;
+    private final Object[] mBefore;
+    private final Object[] mAfter;
+    private final float[] mValues;
+
+    /**
+     * 最早一条记录的位置、记录条数和已经生效的条数，mCursor之后的记录可以重做
+     */
+    private int mStart;
+    private int mSize;
+    private int mCursor;
+
+    public TransformHistory(Callback<T> callback) {
+        this(callback, DEFAULT_CAPACITY);
+    }
+
+    public TransformHistory(Callback<T> callback, int capacity) {
+        if (callback == null) {
+            throw new NullPointerException("callback不能为空");
+        }
+        if (capacity <= 0) {
+            throw new IllegalArgumentException("capacity必须大于0");
+        }
+        mCallback = callback;
+        mCapacity = capacity;
+        mTypes = new int[capacity];
+        mTargets = new Object[capacity];
+        mBefore = new Object[capacity];
+        mAfter = new Object[capacity];
+        mValues = new float[capacity * FLOATS_PER_RECORD];
+    }
+
+    /**
+     * 记录一次拖动、旋转或缩放
+     */
+    public void recordTransform(T target, float fromX, float fromY, float fromDegree, float fromScale,
+                                float toX, float toY, float toDegree, float toScale) {
+        int slot = obtainSlot(TYPE_TRANSFORM, target);
+        int base = slot * FLOATS_PER_RECORD;
+        mValues[base] = fromX;
+        mValues[base + 1] = fromY;
+        mValues[base + 2] = fromDegree;
+        mValues[base + 3] = fromScale;
+        mValues[base + 4] = toX;
+        mValues[base + 5] = toY;
+        mValues[base + 6] = toDegree;
+        mValues[base + 7] = toScale;
+    }
+
+    /**
+     * 记录一次内容变化，from和to需要是不可变对象，例如String
+     */
+    public void recordContent(T target, Object from, Object to) {
+        int slot = obtainSlot(TYPE_CONTENT, target);
+        mBefore[slot] = from;
+        mAfter[slot] = to;
+    }
+
+    /**
+     * 记录添加到index位置
+     */
+    public void recordAdd(T target, int index) {
+        int slot = obtainSlot(TYPE_ADD, target);
+        mValues[slot * FLOATS_PER_RECORD] = index;
+    }
+
+    /**
+     * 记录从index位置删除
+     */
+    public void recordRemove(T target, int index) {
+        int slot = obtainSlot(TYPE_REMOVE, target);
+        mValues[slot * FLOATS_PER_RECORD] = index;
+    }
+
+    public boolean canUndo() {
+        return mCursor > 0;
+    }
+
+    public boolean canRedo() {
+        return mCursor < mSize;
+    }
+
+    /**
+     * @return 没有可以撤销的记录时返回false
+     */
+    public boolean undo() {
+        if (!canUndo()) {
+            return false;
+        }
+        mCursor--;
+        apply(slotAt(mCursor), true);
+        return true;
+    }
+
+    /**
+     * @return 没有可以重做的记录时返回false
+     */
+    public boolean redo() {
+        if (!canRedo()) {
+            return false;
+        }
+        apply(slotAt(mCursor), false);
+        mCursor++;
+        return true;
+    }
+
+    public void clear() {
+        for (int i = 0; i < mSize; i++) {
+            releaseSlot(slotAt(i));
+        }
+        mStart = 0;
+        mSize = 0;
+        mCursor = 0;
+    }
+
+    /**
+     * 新记录会丢弃所有可以重做的记录，缓冲区满时覆盖最早的一条
+     */
+    private int obtainSlot(int type, T target) {
+        if (target == null) {
+            throw new NullPointerException("target不能为空");
+        }
+        for (int i = mCursor; i < mSize; i++) {
+            releaseSlot(slotAt(i));
+        }
+        mSize = mCursor;
+        if (mSize == mCapacity) {
+            releaseSlot(mStart);
+            mStart = (mStart + 1) % mCapacity;
+            mSize--;
+        }
+        int slot = slotAt(mSize);
+        mTypes[slot] = type;
+        mTargets[slot] = target;
+        mSize++;
+        mCursor = mSize;
+        return slot;
+    }
+
+    private int slotAt(int position) {
+        return (mStart + position) % mCapacity;
+    }
+
+    /**
+     * 释放引用，被覆盖或丢弃的记录不再持有元素和内容
+     */
+    private void releaseSlot(int slot) {
+        mTargets[slot] = null;
+        mBefore[slot] = null;
+        mAfter[slot] = null;
+    }
+
+    @SuppressWarnings("unchecked")
+    private void apply(int slot, boolean isUndo) {
+        T target = (T) mTargets[slot];
+        int base = slot * FLOATS_PER_RECORD;
+        switch (mTypes[slot]) {
+            case TYPE_TRANSFORM:
+                int offset = isUndo ? base : base + 4;
+                mCallback.onApplyTransform(target, mValues[offset], mValues[offset + 1], mValues[offset + 2], mValues[offset + 3]);
+                break;
+            case TYPE_CONTENT:
+                mCallback.onApplyContent(target, isUndo ? mBefore[slot] : mAfter[slot]);
+                break;
+            case TYPE_ADD:
+                if (isUndo) {
+                    mCallback.onRemove(target);
+                } else {
+                    mCallback.onAdd(target, (int) mValues[base]);
+                }
+                break;
+            case TYPE_REMOVE:
+                if (isUndo) {
+                    mCallback.onAdd(target, (int) mValues[base]);
+                } else {
+                    mCallback.onRemove(target);
+                }
+                break;
+        }
+    }
+
+    /**
+     * 撤销、重做时回调，实现中不要再产生新的记录
+     */
+    public interface Callback<T> {
+        void onApplyTransform(T target, float centerX, float centerY, float degree, float scale);
+
+        void onApplyContent(T target, Object content);
+
+        void onAdd(T target, int index);
+
+        void onRemove(T target);
+    }
+}
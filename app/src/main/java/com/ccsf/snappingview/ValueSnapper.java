@@ -0,0 +1,156 @@
+package com.ccsf.snappingview;
+
+import java.util.Arrays;
+
+/**
+ * 带回差的吸附：手势中的原始值进入某个吸附点的snapThreshold范围时锁定到该点，
+ * 离开releaseThreshold（大于snapThreshold）范围后才解除，吸附点附近不会来回抖动
+ * <p>
+ * 吸附点排序后保存，每次只在锁定的点上比较一次或者二分查找最近的点，适合在每个MOVE事件中调用。
+ * period大于0时按周期处理，例如角度以360为周期，370度会吸附到360度
+ */
+public class ValueSnapper {
+
+    public static final float DEFAULT_DEGREE_SNAP = 3f;
+    public static final float DEFAULT_DEGREE_RELEASE = 6f;
+    public static final float DEFAULT_SCALE_SNAP = 0.04f;
+    public static final float DEFAULT_SCALE_RELEASE = 0.08f;
+
+    private final float mPeriod;
+    private final float mSnapThreshold;
+    private final float mReleaseThreshold;
+    private float[] mPoints = new float[0];
+
+    /**
+     * 额外的一个吸附点，例如随内容尺寸变化的适配宽度缩放，NaN表示没有
+     */
+    private float mExtraPoint = Float.NaN;
+
+    private boolean isLocked = false;
+    private float mLockedValue;
+
+    /**
+     * @param snapThreshold    进入吸附的距离
+     * @param releaseThreshold 解除吸附的距离，不能小于snapThreshold
+     * @param period           周期，不需要时传0
+     */
+    public ValueSnapper(float snapThreshold, float releaseThreshold, float period) {
+        if (snapThreshold < 0 || releaseThreshold < snapThreshold) {
+            throw new IllegalArgumentException("releaseThreshold不能小于snapThreshold，且都不能小于0");
+        }
+        if (period < 0) {
+            throw new IllegalArgumentException("period不能小于0");
+        }
+        mSnapThreshold = snapThreshold;
+        mReleaseThreshold = releaseThreshold;
+        mPeriod = period;
+    }
+
+    /**
+     * 角度吸附，默认吸附到0、45、90、135、180、225、270、315度
+     */
+    public static ValueSnapper forDegree() {
+        ValueSnapper snapper = new ValueSnapper(DEFAULT_DEGREE_SNAP, DEFAULT_DEGREE_RELEASE, 360f);
+        snapper.setPoints(0f, 45f, 90f, 135f, 180f, 225f, 270f, 315f);
+        return snapper;
+    }
+
+    /**
+     * 缩放吸附，默认吸附到1倍和2倍
+     */
+    public static ValueSnapper forScale() {
+        ValueSnapper snapper = new ValueSnapper(DEFAULT_SCALE_SNAP, DEFAULT_SCALE_RELEASE, 0f);
+        snapper.setPoints(1f, 2f);
+        return snapper;
+    }
+
+    /**
+     * 设置吸附点，不传时关闭吸附。有周期时吸附点需要在[0, period)内
+     */
+    public void setPoints(float... points) {
+        float[] sorted = points == null ? new float[0] : points.clone();
+        Arrays.sort(sorted);
+        mPoints = sorted;
+        isLocked = false;
+    }
+
+    /**
+     * 设置额外的吸附点，传Float.NaN取消
+     */
+    public void setExtraPoint(float point) {
+        mExtraPoint = point;
+        isLocked = false;
+    }
+
+    public boolean isLocked() {
+        return isLocked;
+    }
+
+    /**
+     * 手势开始时调用，解除上一次手势的锁定
+     */
+    public void reset() {
+        isLocked = false;
+    }
+
+    /**
+     * @param raw 手势累积的原始值
+     * @return 吸附后的值，没有吸附时就是raw
+     */
+    public float snap(float raw) {
+        if (isLocked) {
+            if (Math.abs(raw - mLockedValue) <= mReleaseThreshold) {
+                return mLockedValue;
+            }
+            isLocked = false;
+        }
+        float base = 0;
+        float value = raw;
+        if (mPeriod > 0) {
+            base = (float) Math.floor(raw / mPeriod) * mPeriod;
+            value = raw - base;
+        }
+        float nearest = Float.NaN;
+        float nearestDistance = Float.MAX_VALUE;
+        int count = mPoints.length;
+        if (count > 0) {
+            int index = Arrays.binarySearch(mPoints, value);
+            if (index < 0) {
+                index = -index - 1;
+            }
+            //value落在index - 1和index之间，有周期时两端还要和相邻周期的点比较
+            for (int i = index - 1; i <= index; i++) {
+                float point;
+                if (i < 0) {
+                    if (mPeriod <= 0) {
+                        continue;
+                    }
+                    point = mPoints[count - 1] - mPeriod;
+                } else if (i >= count) {
+                    if (mPeriod <= 0) {
+                        continue;
+                    }
+                    point = mPoints[0] + mPeriod;
+                } else {
+                    point = mPoints[i];
+                }
+                float distance = Math.abs(value - point);
+                if (distance < nearestDistance) {
+                    nearestDistance = distance;
+                    nearest = point;
+                }
+            }
+        }
+        if (!Float.isNaN(mExtraPoint) && Math.abs(raw - mExtraPoint) < nearestDistance) {
+            nearestDistance = Math.abs(raw - mExtraPoint);
+            nearest = mExtraPoint;
+            base = 0;
+        }
+        if (nearestDistance > mSnapThreshold) {
+            return raw;
+        }
+        isLocked = true;
+        mLockedValue = base + nearest;
+        return mLockedValue;
+    }
+}
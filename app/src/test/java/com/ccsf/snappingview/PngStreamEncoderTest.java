@@ -0,0 +1,160 @@
+package com.ccsf.snappingview;
+
+import org.junit.Test;
+
+import java.awt.image.BufferedImage;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.Random;
+import java.util.zip.CRC32;
+import java.util.zip.Deflater;
+
+import javax.imageio.ImageIO;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+public class PngStreamEncoderTest {
+
+    private static final byte[] SIGNATURE = {(byte) 0x89, 'P', 'N', 'G', '\r', '\n', 0x1a, '\n'};
+
+    private static int[] randomPixels(int count, long seed) {
+        Random random = new Random(seed);
+        int[] pixels = new int[count];
+        for (int i = 0; i < count; i++) {
+            pixels[i] = random.nextInt();
+        }
+        return pixels;
+    }
+
+    /**
+     * 分几次写入，每次的行数不同
+     */
+    private static byte[] encode(int[] pixels, int width, int height, int... rowsPerWrite) throws IOException {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        PngStreamEncoder encoder = new PngStreamEncoder(out, width, height, Deflater.DEFAULT_COMPRESSION);
+        encoder.writeHeader();
+        int row = 0;
+        int i = 0;
+        while (row < height) {
+            int rows = Math.min(rowsPerWrite[i++ % rowsPerWrite.length], height - row);
+            encoder.writeRows(pixels, row * width, width, rows);
+            row += rows;
+        }
+        encoder.finish();
+        return out.toByteArray();
+    }
+
+    @Test
+    public void header_hasSignatureAndIhdr() throws IOException {
+        byte[] png = encode(randomPixels(7 * 3, 1), 7, 3, 3);
+        for (int i = 0; i < SIGNATURE.length; i++) {
+            assertEquals(SIGNATURE[i], png[i]);
+        }
+        ByteBuffer buffer = ByteBuffer.wrap(png, SIGNATURE.length, png.length - SIGNATURE.length);
+        assertEquals(13, buffer.getInt());
+        assertEquals('I', buffer.get());
+        assertEquals('H', buffer.get());
+        assertEquals('D', buffer.get());
+        assertEquals('R', buffer.get());
+        assertEquals(7, buffer.getInt());
+        assertEquals(3, buffer.getInt());
+        assertEquals(8, buffer.get());
+        assertEquals(6, buffer.get());
+        assertEquals(0, buffer.get());
+        assertEquals(0, buffer.get());
+        assertEquals(0, buffer.get());
+    }
+
+    @Test
+    public void chunks_haveValidCrcAndEndWithIend() throws IOException {
+        //随机像素压缩后超过一个IDAT块的大小
+        int width = 200;
+        int height = 150;
+        byte[] png = encode(randomPixels(width * height, 2), width, height, 16);
+        ByteBuffer buffer = ByteBuffer.wrap(png);
+        buffer.position(SIGNATURE.length);
+        int idatCount = 0;
+        String lastType = null;
+        CRC32 crc = new CRC32();
+        while (buffer.hasRemaining()) {
+            int length = buffer.getInt();
+            int typeStart = buffer.position();
+            String type = new String(png, typeStart, 4, "US-ASCII");
+            crc.reset();
+            crc.update(png, typeStart, 4 + length);
+            buffer.position(typeStart + 4 + length);
+            assertEquals(type + "的CRC", (int) crc.getValue(), buffer.getInt());
+            if ("IDAT".equals(type)) {
+                idatCount++;
+            }
+            lastType = type;
+        }
+        assertEquals("IEND", lastType);
+        assertTrue(idatCount > 1);
+    }
+
+    @Test
+    public void pixels_roundTripThroughImageIo() throws IOException {
+        int width = 37;
+        int height = 23;
+        int[] pixels = randomPixels(width * height, 3);
+        byte[] png = encode(pixels, width, height, 5, 1, 8);
+        BufferedImage image = ImageIO.read(new ByteArrayInputStream(png));
+        assertEquals(width, image.getWidth());
+        assertEquals(height, image.getHeight());
+        int[] decoded = image.getRGB(0, 0, width, height, null, 0, width);
+        assertArrayEquals(pixels, decoded);
+    }
+
+    @Test
+    public void writeRows_honorsOffsetAndStride() throws IOException {
+        int width = 4;
+        int height = 2;
+        int stride = 6;
+        int[] padded = randomPixels(1 + stride * height, 4);
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        PngStreamEncoder encoder = new PngStreamEncoder(out, width, height, Deflater.BEST_SPEED);
+        encoder.writeRows(padded, 1, stride, height);
+        encoder.finish();
+        BufferedImage image = ImageIO.read(new ByteArrayInputStream(out.toByteArray()));
+        for (int y = 0; y < height; y++) {
+            for (int x = 0; x < width; x++) {
+                assertEquals(padded[1 + y * stride + x], image.getRGB(x, y));
+            }
+        }
+    }
+
+    @Test(expected = IllegalStateException.class)
+    public void writeRows_beyondHeightThrows() throws IOException {
+        PngStreamEncoder encoder = new PngStreamEncoder(new ByteArrayOutputStream(), 2, 1, Deflater.DEFAULT_COMPRESSION);
+        try {
+            encoder.writeRows(new int[4], 0, 2, 2);
+        } finally {
+            encoder.release();
+        }
+    }
+
+    @Test(expected = IllegalStateException.class)
+    public void finish_withMissingRowsThrows() throws IOException {
+        PngStreamEncoder encoder = new PngStreamEncoder(new ByteArrayOutputStream(), 2, 2, Deflater.DEFAULT_COMPRESSION);
+        try {
+            encoder.writeRows(new int[2], 0, 2, 1);
+            encoder.finish();
+        } finally {
+            encoder.release();
+        }
+    }
+
+    @Test
+    public void release_canBeCalledRepeatedly() throws IOException {
+        PngStreamEncoder encoder = new PngStreamEncoder(new ByteArrayOutputStream(), 1, 1, Deflater.DEFAULT_COMPRESSION);
+        encoder.writeRows(new int[1], 0, 1, 1);
+        encoder.finish();
+        encoder.release();
+        encoder.release();
+    }
+}
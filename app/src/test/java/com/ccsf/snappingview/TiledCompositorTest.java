@@ -0,0 +1,106 @@
+package com.ccsf.snappingview;
+
+import android.graphics.Bitmap;
+import android.graphics.Canvas;
+import android.graphics.Rect;
+
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.robolectric.RobolectricTestRunner;
+import org.robolectric.annotation.Config;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+@RunWith(RobolectricTestRunner.class)
+@Config(sdk = 28)
+public class TiledCompositorTest {
+
+    /**
+     * 记录是否被绘制的元素
+     */
+    private static class RecordingElement extends StickerElement {
+
+        private boolean isDrawn = false;
+
+        RecordingElement() {
+            updateContentSize();
+        }
+
+        @Override
+        public int getContentWidth() {
+            return 20;
+        }
+
+        @Override
+        public int getContentHeight() {
+            return 20;
+        }
+
+        @Override
+        protected void drawContent(Canvas canvas) {
+            isDrawn = true;
+        }
+    }
+
+    /**
+     * 合成一次，返回绘制了元素的分块左上角
+     */
+    private static List<String> compositeDrawnTiles(TiledCompositor compositor, final RecordingElement element)
+            throws IOException {
+        final List<String> drawn = new ArrayList<>();
+        compositor.composite(new TiledCompositor.TileSink() {
+            @Override
+            public void onTile(Bitmap tile, int left, int top) {
+                if (element.isDrawn) {
+                    drawn.add(left + "," + top);
+                    element.isDrawn = false;
+                }
+            }
+        });
+        return drawn;
+    }
+
+    @Test
+    public void movedElement_isCulledByNewBounds() throws IOException {
+        TiledCompositor compositor = new TiledCompositor(256, 256, 64);
+        RecordingElement element = new RecordingElement();
+        element.getTransform().setCenter(40, 40);
+        element.getTransform().update();
+        compositor.addElement(element);
+
+        List<String> drawn = compositeDrawnTiles(compositor, element);
+        assertEquals(1, drawn.size());
+        assertEquals("0,0", drawn.get(0));
+
+        //两次合成之间移动元素，不需要重新添加
+        element.getTransform().setCenter(200, 200);
+        element.getTransform().update();
+        drawn = compositeDrawnTiles(compositor, element);
+        assertEquals(1, drawn.size());
+        assertEquals("192,192", drawn.get(0));
+    }
+
+    @Test
+    public void renderTile_usesCurrentBounds() {
+        TiledCompositor compositor = new TiledCompositor(256, 256, 64);
+        RecordingElement element = new RecordingElement();
+        element.getTransform().setCenter(40, 40);
+        element.getTransform().update();
+        compositor.addElement(element);
+        Rect tileRect = new Rect(192, 192, 256, 256);
+
+        compositor.renderTile(tileRect, null);
+        assertFalse(element.isDrawn);
+
+        element.getTransform().setCenter(200, 200);
+        element.getTransform().update();
+        compositor.renderTile(tileRect, null);
+        assertTrue(element.isDrawn);
+    }
+}
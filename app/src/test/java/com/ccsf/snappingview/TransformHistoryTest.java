@@ -0,0 +1,182 @@
+package com.ccsf.snappingview;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+public class TransformHistoryTest {
+
+    private final List<String> mCalls = new ArrayList<>();
+    private final TransformHistory.Callback<String> mCallback = new TransformHistory.Callback<String>() {
+        @Override
+        public void onApplyTransform(String target, float centerX, float centerY, float degree, float scale) {
+            mCalls.add("transform " + target + " " + centerX + " " + centerY + " " + degree + " " + scale);
+        }
+
+        @Override
+        public void onApplyContent(String target, Object content) {
+            mCalls.add("content " + target + " " + content);
+        }
+
+        @Override
+        public void onAdd(String target, int index) {
+            mCalls.add("add " + target + " " + index);
+        }
+
+        @Override
+        public void onRemove(String target) {
+            mCalls.add("remove " + target);
+        }
+    };
+
+    @Before
+    public void setUp() {
+        mCalls.clear();
+    }
+
+    private static void recordMove(TransformHistory<String> history, String target, float from, float to) {
+        history.recordTransform(target, from, from, 0, 1, to, to, 0, 1);
+    }
+
+    @Test
+    public void emptyHistory_cannotUndoOrRedo() {
+        TransformHistory<String> history = new TransformHistory<>(mCallback);
+        assertFalse(history.canUndo());
+        assertFalse(history.canRedo());
+        assertFalse(history.undo());
+        assertFalse(history.redo());
+        assertTrue(mCalls.isEmpty());
+    }
+
+    @Test
+    public void undoRedo_stopAtCursorBounds() {
+        TransformHistory<String> history = new TransformHistory<>(mCallback);
+        recordMove(history, "a", 0, 1);
+        recordMove(history, "a", 1, 2);
+
+        assertTrue(history.undo());
+        assertTrue(history.undo());
+        assertFalse(history.canUndo());
+        assertFalse(history.undo());
+
+        assertTrue(history.redo());
+        assertTrue(history.redo());
+        assertFalse(history.canRedo());
+        assertFalse(history.redo());
+
+        assertEquals("transform a 1.0 1.0 0.0 1.0", mCalls.get(0));
+        assertEquals("transform a 0.0 0.0 0.0 1.0", mCalls.get(1));
+        assertEquals("transform a 1.0 1.0 0.0 1.0", mCalls.get(2));
+        assertEquals("transform a 2.0 2.0 0.0 1.0", mCalls.get(3));
+        assertEquals(4, mCalls.size());
+    }
+
+    @Test
+    public void newRecord_truncatesRedo() {
+        TransformHistory<String> history = new TransformHistory<>(mCallback);
+        recordMove(history, "a", 0, 1);
+        recordMove(history, "a", 1, 2);
+        history.undo();
+        assertTrue(history.canRedo());
+
+        recordMove(history, "a", 1, 5);
+        assertFalse(history.canRedo());
+        assertFalse(history.redo());
+
+        mCalls.clear();
+        history.undo();
+        history.undo();
+        assertFalse(history.canUndo());
+        assertEquals("transform a 1.0 1.0 0.0 1.0", mCalls.get(0));
+        assertEquals("transform a 0.0 0.0 0.0 1.0", mCalls.get(1));
+    }
+
+    @Test
+    public void exceedingCapacity_overwritesOldestRecords() {
+        TransformHistory<String> history = new TransformHistory<>(mCallback, 3);
+        for (int i = 0; i < 5; i++) {
+            recordMove(history, "a", i, i + 1);
+        }
+        int undoCount = 0;
+        while (history.undo()) {
+            undoCount++;
+        }
+        assertEquals(3, undoCount);
+        //只剩最后三条：4->5、3->4、2->3
+        assertEquals("transform a 4.0 4.0 0.0 1.0", mCalls.get(0));
+        assertEquals("transform a 3.0 3.0 0.0 1.0", mCalls.get(1));
+        assertEquals("transform a 2.0 2.0 0.0 1.0", mCalls.get(2));
+
+        mCalls.clear();
+        while (history.redo()) {
+        }
+        assertEquals(3, mCalls.size());
+        assertEquals("transform a 5.0 5.0 0.0 1.0", mCalls.get(2));
+    }
+
+    @Test
+    public void wrapAround_afterUndoAndNewRecords() {
+        TransformHistory<String> history = new TransformHistory<>(mCallback, 2);
+        recordMove(history, "a", 0, 1);
+        recordMove(history, "a", 1, 2);
+        recordMove(history, "a", 2, 3);
+        history.undo();
+        recordMove(history, "a", 2, 7);
+        recordMove(history, "a", 7, 8);
+
+        mCalls.clear();
+        assertTrue(history.undo());
+        assertTrue(history.undo());
+        assertFalse(history.undo());
+        assertEquals("transform a 7.0 7.0 0.0 1.0", mCalls.get(0));
+        assertEquals("transform a 2.0 2.0 0.0 1.0", mCalls.get(1));
+    }
+
+    @Test
+    public void addAndRemove_roundTripIndex() {
+        TransformHistory<String> history = new TransformHistory<>(mCallback);
+        history.recordAdd("a", 2);
+        history.recordRemove("b", 5);
+
+        history.undo();
+        history.undo();
+        history.redo();
+        history.redo();
+
+        assertEquals("add b 5", mCalls.get(0));
+        assertEquals("remove a", mCalls.get(1));
+        assertEquals("add a 2", mCalls.get(2));
+        assertEquals("remove b", mCalls.get(3));
+    }
+
+    @Test
+    public void content_undoRestoresBefore() {
+        TransformHistory<String> history = new TransformHistory<>(mCallback);
+        history.recordContent("a", "old", "new");
+        history.undo();
+        history.redo();
+        assertEquals("content a old", mCalls.get(0));
+        assertEquals("content a new", mCalls.get(1));
+    }
+
+    @Test
+    public void clear_dropsAllRecords() {
+        TransformHistory<String> history = new TransformHistory<>(mCallback);
+        recordMove(history, "a", 0, 1);
+        history.undo();
+        history.clear();
+        assertFalse(history.canUndo());
+        assertFalse(history.canRedo());
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void zeroCapacity_throws() {
+        new TransformHistory<>(mCallback, 0);
+    }
+}
@@ -0,0 +1,117 @@
+package com.ccsf.snappingview;
+
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+public class ValueSnapperTest {
+
+    private static final float DELTA = 1e-4f;
+
+    @Test
+    public void snapsWithinSnapThreshold() {
+        ValueSnapper snapper = ValueSnapper.forDegree();
+        assertEquals(0f, snapper.snap(3f), DELTA);
+        assertTrue(snapper.isLocked());
+    }
+
+    @Test
+    public void doesNotSnapBeyondSnapThreshold() {
+        ValueSnapper snapper = ValueSnapper.forDegree();
+        assertEquals(3.5f, snapper.snap(3.5f), DELTA);
+        assertFalse(snapper.isLocked());
+    }
+
+    @Test
+    public void holdsUntilBeyondReleaseThreshold() {
+        ValueSnapper snapper = ValueSnapper.forDegree();
+        assertEquals(45f, snapper.snap(44f), DELTA);
+        //进入之后在releaseThreshold以内保持吸附
+        assertEquals(45f, snapper.snap(49.5f), DELTA);
+        assertEquals(45f, snapper.snap(51f), DELTA);
+        assertTrue(snapper.isLocked());
+        //超过releaseThreshold才解除
+        assertEquals(51.5f, snapper.snap(51.5f), DELTA);
+        assertFalse(snapper.isLocked());
+        //解除后要重新进入snapThreshold才会吸附
+        assertEquals(49.5f, snapper.snap(49.5f), DELTA);
+        assertEquals(45f, snapper.snap(48f), DELTA);
+    }
+
+    @Test
+    public void resetReleasesLock() {
+        ValueSnapper snapper = ValueSnapper.forScale();
+        assertEquals(1f, snapper.snap(1.03f), DELTA);
+        snapper.reset();
+        assertFalse(snapper.isLocked());
+        assertEquals(1.06f, snapper.snap(1.06f), DELTA);
+    }
+
+    @Test
+    public void periodicWrapSnapsToNextPeriod() {
+        ValueSnapper snapper = ValueSnapper.forDegree();
+        assertEquals(360f, snapper.snap(358f), DELTA);
+        snapper.reset();
+        assertEquals(360f, snapper.snap(362f), DELTA);
+        snapper.reset();
+        assertEquals(0f, snapper.snap(-2f), DELTA);
+        snapper.reset();
+        assertEquals(720f, snapper.snap(722f), DELTA);
+        snapper.reset();
+        assertEquals(-45f, snapper.snap(-43f), DELTA);
+    }
+
+    @Test
+    public void periodicLockHoldsAcrossWrap() {
+        ValueSnapper snapper = ValueSnapper.forDegree();
+        assertEquals(360f, snapper.snap(358f), DELTA);
+        assertEquals(360f, snapper.snap(365f), DELTA);
+        assertEquals(366.5f, snapper.snap(366.5f), DELTA);
+    }
+
+    @Test
+    public void extraPointWinsWhenCloser() {
+        ValueSnapper snapper = ValueSnapper.forScale();
+        snapper.setExtraPoint(1.02f);
+        assertEquals(1.02f, snapper.snap(1.03f), DELTA);
+        snapper.reset();
+        assertEquals(1f, snapper.snap(0.995f), DELTA);
+    }
+
+    @Test
+    public void extraPointAloneSnapsAndReleases() {
+        ValueSnapper snapper = ValueSnapper.forScale();
+        snapper.setExtraPoint(1.5f);
+        assertEquals(1.5f, snapper.snap(1.53f), DELTA);
+        assertEquals(1.5f, snapper.snap(1.57f), DELTA);
+        assertEquals(1.59f, snapper.snap(1.59f), DELTA);
+        snapper.setExtraPoint(Float.NaN);
+        assertEquals(1.52f, snapper.snap(1.52f), DELTA);
+    }
+
+    @Test
+    public void extraPointIsNotPeriodic() {
+        ValueSnapper snapper = ValueSnapper.forDegree();
+        snapper.setExtraPoint(30f);
+        assertEquals(30f, snapper.snap(31f), DELTA);
+        snapper.reset();
+        //周期只作用于普通吸附点
+        assertEquals(391f, snapper.snap(391f), DELTA);
+    }
+
+    @Test
+    public void noPointsReturnsRaw() {
+        ValueSnapper snapper = new ValueSnapper(1f, 2f, 0f);
+        assertEquals(0.5f, snapper.snap(0.5f), DELTA);
+        snapper.setPoints();
+        assertEquals(0.5f, snapper.snap(0.5f), DELTA);
+        assertFalse(snapper.isLocked());
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void releaseBelowSnapThrows() {
+        new ValueSnapper(2f, 1f, 0f);
+    }
+}